@@ -17,19 +17,24 @@
  */
 package org.apache.avro;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.apache.avro.Schema.Field;
 import org.apache.avro.Schema.Type;
+import org.apache.avro.util.WeakIdentityHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,6 +51,28 @@ public class SchemaCompatibility {
   private SchemaCompatibility() {
   }
 
+  private static final String CACHE_SIZE_PROPERTY = "org.apache.avro.compatibility.cacheSize";
+  private static final int CACHE_SIZE;
+
+  static {
+    String o = System.getProperty(CACHE_SIZE_PROPERTY);
+    int i = 10000;
+    if (o != null) {
+      try {
+        i = Integer.parseUnsignedInt(o);
+      } catch (NumberFormatException nfe) {
+        LOG.warn("Could not parse property " + CACHE_SIZE_PROPERTY + ": " + o, nfe);
+      }
+    }
+    CACHE_SIZE = i;
+  }
+
+  /** Compatibility results, keyed by reader and writer schema fingerprints. */
+  private static final ConcurrentMap<SchemaFingerprintPair, SchemaPairCompatibility> RESULT_CACHE = new ConcurrentHashMap<>();
+
+  /** Fingerprints of the schema instances seen so far. */
+  private static final Map<Schema, Long> FINGERPRINTS = Collections.synchronizedMap(new WeakIdentityHashMap<>());
+
   /** Message to annotate reader/writer schema pairs that are compatible. */
   public static final String READER_WRITER_COMPATIBLE_MESSAGE = "Reader schema can always successfully decode data written using the writer schema.";
 
@@ -58,6 +85,55 @@ public class SchemaCompatibility {
    * @return a result object identifying any compatibility errors.
    */
   public static SchemaPairCompatibility checkReaderWriterCompatibility(final Schema reader, final Schema writer) {
+    if (CACHE_SIZE <= 0) {
+      return computeReaderWriterCompatibility(reader, writer);
+    }
+    final SchemaFingerprintPair key = new SchemaFingerprintPair(fingerprint(reader), fingerprint(writer));
+    SchemaPairCompatibility cached = RESULT_CACHE.get(key);
+    if (cached == null) {
+      cached = computeReaderWriterCompatibility(reader, writer);
+      if (RESULT_CACHE.size() >= CACHE_SIZE) {
+        // Evict an arbitrary entry; hot pairs are re-added on their next check.
+        Iterator<SchemaFingerprintPair> keys = RESULT_CACHE.keySet().iterator();
+        if (keys.hasNext()) {
+          RESULT_CACHE.remove(keys.next());
+        }
+      }
+      RESULT_CACHE.putIfAbsent(key, cached);
+    }
+    if (cached.getReader() == reader && cached.getWriter() == writer) {
+      return cached;
+    }
+    return new SchemaPairCompatibility(cached.getResult(), reader, writer, cached.getDescription());
+  }
+
+  /**
+   * Removes all entries from the process-wide cache of compatibility results.
+   *
+   * <p>
+   * Results are keyed by fingerprints of the full JSON of the reader and writer
+   * schemas, and fingerprints are remembered per schema instance. Call this if a
+   * schema that was already checked is modified afterwards, e.g. by adding
+   * aliases.
+   * </p>
+   */
+  public static void clearCache() {
+    RESULT_CACHE.clear();
+    FINGERPRINTS.clear();
+  }
+
+  private static long fingerprint(final Schema schema) {
+    Long fingerprint = FINGERPRINTS.get(schema);
+    if (fingerprint == null) {
+      // The parsing canonical form drops aliases and defaults, which do matter
+      // for compatibility, so fingerprint the complete schema JSON instead.
+      fingerprint = SchemaNormalization.fingerprint64(schema.toString().getBytes(StandardCharsets.UTF_8));
+      FINGERPRINTS.put(schema, fingerprint);
+    }
+    return fingerprint;
+  }
+
+  private static SchemaPairCompatibility computeReaderWriterCompatibility(final Schema reader, final Schema writer) {
     final SchemaCompatibilityResult compatibility = new ReaderWriterCompatibilityChecker().getCompatibility(reader,
         writer);
 
@@ -183,6 +259,36 @@ public class SchemaCompatibility {
     }
   }
 
+  /**
+   * Reader/writer schema fingerprint pair, used as the key of the process-wide
+   * compatibility result cache.
+   */
+  private static final class SchemaFingerprintPair {
+    private final long mReader;
+    private final long mWriter;
+
+    SchemaFingerprintPair(final long reader, final long writer) {
+      mReader = reader;
+      mWriter = writer;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+      return Long.hashCode(mReader) * 31 + Long.hashCode(mWriter);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof SchemaFingerprintPair)) {
+        return false;
+      }
+      final SchemaFingerprintPair that = (SchemaFingerprintPair) obj;
+      return (this.mReader == that.mReader) && (this.mWriter == that.mWriter);
+    }
+  }
+
   /**
    * Determines the compatibility of a reader/writer schema pair.
    *
@@ -0,0 +1,467 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.io;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+
+/**
+ * Compares binary encoded data of a fixed schema. The schema is compiled once
+ * into a tree of comparison nodes, so unlike
+ * {@link BinaryData#compare(byte[], int, int, byte[], int, int, Schema)} no
+ * schema interpretation, decoder or thread local lookup happens per comparison.
+ * Values are read straight from the byte arrays; fixed, bytes and string values
+ * are compared in place, and fields with {@link Field.Order#IGNORE} are skipped
+ * without decoding.
+ *
+ * <p>
+ * Order is consistent with that of
+ * {@link BinaryData#compare(byte[], int, int, byte[], int, int, Schema)} and
+ * {@link org.apache.avro.generic.GenericData#compare(Object, Object, Schema)}.
+ * Instances are immutable and thread-safe.
+ * </p>
+ */
+public class BinaryComparator {
+
+  private final Node root;
+
+  /** Compiles a comparator for binary data written with the given schema. */
+  public BinaryComparator(Schema schema) {
+    this.root = compile(schema, new IdentityHashMap<>());
+  }
+
+  /**
+   * Compare binary encoded data. If equal, return zero. If greater-than, return a
+   * positive value, if less than return a negative value.
+   */
+  public int compare(byte[] b1, int s1, byte[] b2, int s2) {
+    return compare(b1, s1, b1.length - s1, b2, s2, b2.length - s2);
+  }
+
+  /**
+   * Compare binary encoded data. If equal, return zero. If greater-than, return a
+   * positive value, if less than return a negative value.
+   */
+  public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+    Cursor c = new Cursor(b1, s1, b2, s2);
+    try {
+      return root.compare(c);
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new AvroRuntimeException("Truncated binary data", e);
+    }
+  }
+
+  private static Node compile(Schema schema, Map<Schema, Node> seen) {
+    switch (schema.getType()) {
+    case RECORD: {
+      Node compiled = seen.get(schema);
+      if (compiled != null) {
+        return compiled; // recursive reference
+      }
+      RecordNode record = new RecordNode();
+      seen.put(schema, record);
+      List<Field> fields = schema.getFields();
+      record.fields = new Node[fields.size()];
+      record.orders = new int[fields.size()];
+      for (int i = 0; i < record.fields.length; i++) {
+        Field field = fields.get(i);
+        record.fields[i] = compile(field.schema(), seen);
+        switch (field.order()) {
+        case IGNORE:
+          record.orders[i] = 0;
+          break;
+        case DESCENDING:
+          record.orders[i] = -1;
+          break;
+        default:
+          record.orders[i] = 1;
+        }
+      }
+      return record;
+    }
+    case ENUM:
+    case INT:
+    case LONG:
+      return VARINT;
+    case FLOAT:
+      return FLOAT;
+    case DOUBLE:
+      return DOUBLE;
+    case BOOLEAN:
+      return BOOLEAN;
+    case ARRAY:
+      return new ArrayNode(compile(schema.getElementType(), seen));
+    case MAP:
+      return new MapNode(compile(schema.getValueType(), seen));
+    case UNION: {
+      List<Schema> types = schema.getTypes();
+      Node[] branches = new Node[types.size()];
+      for (int i = 0; i < branches.length; i++) {
+        branches[i] = compile(types.get(i), seen);
+      }
+      return new UnionNode(branches);
+    }
+    case FIXED:
+      return new FixedNode(schema.getFixedSize());
+    case STRING:
+    case BYTES:
+      return BYTES;
+    case NULL:
+      return NULL;
+    default:
+      throw new AvroRuntimeException("Unexpected schema to compare!");
+    }
+  }
+
+  /** Read positions in the two buffers being compared. */
+  private static final class Cursor {
+    private final byte[] b1, b2;
+    private int p1, p2;
+
+    Cursor(byte[] b1, int p1, byte[] b2, int p2) {
+      this.b1 = b1;
+      this.p1 = p1;
+      this.b2 = b2;
+      this.p2 = p2;
+    }
+
+    long readLong1() {
+      int b = b1[p1++] & 0xff;
+      if (b < 0x80) { // single byte, the common case
+        return (b >>> 1) ^ -(b & 1);
+      }
+      long n = b & 0x7f;
+      int shift = 7;
+      do {
+        b = b1[p1++] & 0xff;
+        n |= (long) (b & 0x7f) << shift;
+        shift += 7;
+      } while (b >= 0x80);
+      return (n >>> 1) ^ -(n & 1);
+    }
+
+    long readLong2() {
+      int b = b2[p2++] & 0xff;
+      if (b < 0x80) {
+        return (b >>> 1) ^ -(b & 1);
+      }
+      long n = b & 0x7f;
+      int shift = 7;
+      do {
+        b = b2[p2++] & 0xff;
+        n |= (long) (b & 0x7f) << shift;
+        shift += 7;
+      } while (b >= 0x80);
+      return (n >>> 1) ^ -(n & 1);
+    }
+  }
+
+  private static int skipLong(byte[] b, int p) {
+    while ((b[p++] & 0x80) != 0) {
+    }
+    return p;
+  }
+
+  /** Decode the long at the given position without advancing past it. */
+  private static long peekLong(byte[] b, int p) {
+    long n = 0;
+    int shift = 0;
+    int v;
+    do {
+      v = b[p++] & 0xff;
+      n |= (long) (v & 0x7f) << shift;
+      shift += 7;
+    } while (v >= 0x80);
+    return (n >>> 1) ^ -(n & 1);
+  }
+
+  private static int getInt(byte[] b, int p) {
+    return (b[p] & 0xff) | ((b[p + 1] & 0xff) << 8) | ((b[p + 2] & 0xff) << 16) | ((b[p + 3] & 0xff) << 24);
+  }
+
+  private static long getLong(byte[] b, int p) {
+    return (getInt(b, p) & 0xffffffffL) | ((long) getInt(b, p + 4) << 32);
+  }
+
+  /**
+   * Skip a sequence of array or map blocks whose items consist of one or two
+   * values, returning the position after the terminating empty block.
+   */
+  private static int skipBlocks(byte[] b, int p, Node first, Node second) {
+    while (true) {
+      long n = peekLong(b, p);
+      p = skipLong(b, p);
+      if (n == 0) {
+        return p;
+      }
+      if (n < 0) { // block size in bytes is known
+        long size = peekLong(b, p);
+        p = skipLong(b, p) + (int) size;
+        continue;
+      }
+      for (long i = 0; i < n; i++) {
+        p = first.skip(b, p);
+        if (second != null) {
+          p = second.skip(b, p);
+        }
+      }
+    }
+  }
+
+  /** A compiled comparison step for one schema. */
+  private abstract static class Node {
+    /**
+     * Compare the values at the cursor positions. Positions are only guaranteed to
+     * be past both values if the result is zero.
+     */
+    abstract int compare(Cursor c);
+
+    /** Skip the value at the given position, returning the position after it. */
+    abstract int skip(byte[] b, int p);
+  }
+
+  private static final Node NULL = new Node() {
+    @Override
+    int compare(Cursor c) {
+      return 0;
+    }
+
+    @Override
+    int skip(byte[] b, int p) {
+      return p;
+    }
+  };
+
+  private static final Node BOOLEAN = new Node() {
+    @Override
+    int compare(Cursor c) {
+      return Boolean.compare(c.b1[c.p1++] != 0, c.b2[c.p2++] != 0);
+    }
+
+    @Override
+    int skip(byte[] b, int p) {
+      return p + 1;
+    }
+  };
+
+  private static final Node VARINT = new Node() {
+    @Override
+    int compare(Cursor c) {
+      return Long.compare(c.readLong1(), c.readLong2());
+    }
+
+    @Override
+    int skip(byte[] b, int p) {
+      return skipLong(b, p);
+    }
+  };
+
+  private static final Node FLOAT = new Node() {
+    @Override
+    int compare(Cursor c) {
+      int c1 = getInt(c.b1, c.p1), c2 = getInt(c.b2, c.p2);
+      c.p1 += 4;
+      c.p2 += 4;
+      return c1 == c2 ? 0 : Float.compare(Float.intBitsToFloat(c1), Float.intBitsToFloat(c2));
+    }
+
+    @Override
+    int skip(byte[] b, int p) {
+      return p + 4;
+    }
+  };
+
+  private static final Node DOUBLE = new Node() {
+    @Override
+    int compare(Cursor c) {
+      long c1 = getLong(c.b1, c.p1), c2 = getLong(c.b2, c.p2);
+      c.p1 += 8;
+      c.p2 += 8;
+      return c1 == c2 ? 0 : Double.compare(Double.longBitsToDouble(c1), Double.longBitsToDouble(c2));
+    }
+
+    @Override
+    int skip(byte[] b, int p) {
+      return p + 8;
+    }
+  };
+
+  private static final Node BYTES = new Node() {
+    @Override
+    int compare(Cursor c) {
+      int l1 = (int) c.readLong1();
+      int l2 = (int) c.readLong2();
+      int s1 = c.p1, s2 = c.p2;
+      c.p1 += l1;
+      c.p2 += l2;
+      return BinaryData.compareBytes(c.b1, s1, l1, c.b2, s2, l2);
+    }
+
+    @Override
+    int skip(byte[] b, int p) {
+      int length = (int) peekLong(b, p);
+      return skipLong(b, p) + length;
+    }
+  };
+
+  private static final class FixedNode extends Node {
+    private final int size;
+
+    FixedNode(int size) {
+      this.size = size;
+    }
+
+    @Override
+    int compare(Cursor c) {
+      int s1 = c.p1, s2 = c.p2;
+      c.p1 += size;
+      c.p2 += size;
+      return BinaryData.compareBytes(c.b1, s1, size, c.b2, s2, size);
+    }
+
+    @Override
+    int skip(byte[] b, int p) {
+      return p + size;
+    }
+  }
+
+  private static final class RecordNode extends Node {
+    private Node[] fields;
+    /** 1 for ascending, -1 for descending, 0 for ignored fields. */
+    private int[] orders;
+
+    @Override
+    int compare(Cursor c) {
+      for (int i = 0; i < fields.length; i++) {
+        int order = orders[i];
+        if (order == 0) {
+          c.p1 = fields[i].skip(c.b1, c.p1);
+          c.p2 = fields[i].skip(c.b2, c.p2);
+          continue;
+        }
+        int r = fields[i].compare(c);
+        if (r != 0) {
+          return order > 0 ? r : -r;
+        }
+      }
+      return 0;
+    }
+
+    @Override
+    int skip(byte[] b, int p) {
+      for (Node field : fields) {
+        p = field.skip(b, p);
+      }
+      return p;
+    }
+  }
+
+  private static final class UnionNode extends Node {
+    private final Node[] branches;
+
+    UnionNode(Node[] branches) {
+      this.branches = branches;
+    }
+
+    @Override
+    int compare(Cursor c) {
+      int i1 = (int) c.readLong1();
+      int i2 = (int) c.readLong2();
+      int r = Integer.compare(i1, i2);
+      return r == 0 ? branches[i1].compare(c) : r;
+    }
+
+    @Override
+    int skip(byte[] b, int p) {
+      int index = (int) peekLong(b, p);
+      return branches[index].skip(b, skipLong(b, p));
+    }
+  }
+
+  private static final class ArrayNode extends Node {
+    private final Node element;
+
+    ArrayNode(Node element) {
+      this.element = element;
+    }
+
+    @Override
+    int compare(Cursor c) {
+      long i = 0; // position in array
+      long r1 = 0, r2 = 0; // remaining in current block
+      long l1 = 0, l2 = 0; // total array length
+      while (true) {
+        if (r1 == 0) { // refill blocks(s)
+          r1 = c.readLong1();
+          if (r1 < 0) {
+            r1 = -r1;
+            c.p1 = skipLong(c.b1, c.p1);
+          }
+          l1 += r1;
+        }
+        if (r2 == 0) {
+          r2 = c.readLong2();
+          if (r2 < 0) {
+            r2 = -r2;
+            c.p2 = skipLong(c.b2, c.p2);
+          }
+          l2 += r2;
+        }
+        if (r1 == 0 || r2 == 0) // empty block: done
+          return Long.compare(l1, l2);
+        long l = Math.min(l1, l2);
+        while (i < l) { // compare to end of block
+          int r = element.compare(c);
+          if (r != 0)
+            return r;
+          i++;
+          r1--;
+          r2--;
+        }
+      }
+    }
+
+    @Override
+    int skip(byte[] b, int p) {
+      return skipBlocks(b, p, element, null);
+    }
+  }
+
+  private static final class MapNode extends Node {
+    private final Node value;
+
+    MapNode(Node value) {
+      this.value = value;
+    }
+
+    @Override
+    int compare(Cursor c) {
+      throw new AvroRuntimeException("Can't compare maps!");
+    }
+
+    @Override
+    int skip(byte[] b, int p) {
+      return skipBlocks(b, p, BYTES, value);
+    }
+  }
+}
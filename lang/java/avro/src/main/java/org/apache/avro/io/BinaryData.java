@@ -65,6 +65,8 @@ public class BinaryData {
    * Compare binary encoded data. If equal, return zero. If greater-than, return
    * 1, if less than return -1. Order is consistent with that of
    * {@link org.apache.avro.generic.GenericData#compare(Object, Object, Schema)}.
+   * When comparing many values of the same schema, a {@link BinaryComparator}
+   * avoids interpreting the schema on every call.
    */
   public static int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2, Schema schema) {
     Decoders decoders = DECODERS.get();
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.util.internal.ThreadLocalWithInitial;
+
+/**
+ * Utilities to convert binary-encoded data into normalized sort keys. The
+ * unsigned lexicographic order of sort keys, as implemented by
+ * {@link BinaryData#compareBytes(byte[], int, int, byte[], int, int)}, is the
+ * same as the order of the encoded data according to
+ * {@link BinaryData#compare(byte[], int, int, byte[], int, int, Schema)}, so
+ * keys can be sorted with radix sorts or plain byte comparisons. Field orders
+ * {@link Field.Order#DESCENDING} and {@link Field.Order#IGNORE} are respected.
+ *
+ * <p>
+ * Keys are built as follows:
+ * <ul>
+ * <li>int, long and enum values are written big-endian with the sign bit
+ * flipped;</li>
+ * <li>float and double values are written big-endian, with all bits flipped for
+ * negative values and only the sign bit for others;</li>
+ * <li>boolean values are written as one byte, fixed values as is;</li>
+ * <li>string and bytes values are written with every zero byte escaped as
+ * {@code 0x00 0xFF} and terminated by {@code 0x00 0x00};</li>
+ * <li>union values are prefixed with their branch index, array elements are
+ * each prefixed with {@code 0x01} and the array terminated by {@code 0x00};
+ * </li>
+ * <li>record fields are concatenated, with all bits of descending fields
+ * flipped, and ignored fields omitted.</li>
+ * </ul>
+ * Maps cannot be compared, as with
+ * {@link org.apache.avro.generic.GenericData#compare(Object, Object, Schema)}.
+ * Note that bytes values compare as unsigned, as in {@link BinaryData}.
+ * </p>
+ */
+public class BinarySortKey {
+
+  private BinarySortKey() {
+  } // no public ctor
+
+  private static class KeyData {
+    private final BinaryDecoder decoder;
+    private byte[] key = new byte[64];
+    private int length;
+
+    public KeyData() {
+      this.decoder = new BinaryDecoder(new byte[0], 0, 0);
+    }
+
+    public void set(byte[] bytes, int start, int len) {
+      this.decoder.setBuf(bytes, start, len);
+      this.length = 0;
+    }
+
+    public void clear() {
+      decoder.clearBuf();
+      if (key.length > 64 * 1024) { // don't pin large buffers
+        key = new byte[64];
+      }
+    }
+
+    private void ensure(int n) {
+      if (length + n > key.length) {
+        key = Arrays.copyOf(key, Math.max(key.length * 2, length + n));
+      }
+    }
+
+    void write(int b) {
+      ensure(1);
+      key[length++] = (byte) b;
+    }
+
+    void writeInt(int n) {
+      ensure(4);
+      key[length++] = (byte) (n >>> 24);
+      key[length++] = (byte) (n >>> 16);
+      key[length++] = (byte) (n >>> 8);
+      key[length++] = (byte) n;
+    }
+
+    void writeLong(long n) {
+      writeInt((int) (n >>> 32));
+      writeInt((int) n);
+    }
+
+    /** Write bytes with zeros escaped, followed by a terminator. */
+    void writeEscaped(byte[] bytes, int start, int len) {
+      ensure(len + 2);
+      for (int i = start, end = start + len; i < end; i++) {
+        byte b = bytes[i];
+        key[length++] = b;
+        if (b == 0) {
+          ensure(end - i + 2);
+          key[length++] = (byte) 0xFF;
+        }
+      }
+      key[length++] = 0;
+      key[length++] = 0;
+    }
+
+    void invert(int from) {
+      for (int i = from; i < length; i++) {
+        key[i] = (byte) ~key[i];
+      }
+    }
+  }
+
+  private static final ThreadLocal<KeyData> KEY_DATA = ThreadLocalWithInitial.of(KeyData::new);
+
+  /**
+   * Convert binary encoded data into a sort key. Keys of different data written
+   * with the same schema compare, as unsigned bytes, in the same order as the
+   * data.
+   */
+  public static byte[] toSortKey(byte[] bytes, int start, int length, Schema schema) {
+    KeyData data = KEY_DATA.get();
+    data.set(bytes, start, length);
+    try {
+      append(data, schema);
+      return Arrays.copyOf(data.key, data.length);
+    } catch (IOException e) {
+      throw new AvroRuntimeException(e);
+    } finally {
+      data.clear();
+    }
+  }
+
+  private static void append(KeyData data, Schema schema) throws IOException {
+    BinaryDecoder decoder = data.decoder;
+    switch (schema.getType()) {
+    case RECORD: {
+      for (Field field : schema.getFields()) {
+        if (field.order() == Field.Order.IGNORE) {
+          GenericDatumReader.skip(field.schema(), decoder);
+          continue;
+        }
+        int from = data.length;
+        append(data, field.schema());
+        if (field.order() == Field.Order.DESCENDING) {
+          data.invert(from);
+        }
+      }
+      return;
+    }
+    case ENUM:
+    case INT:
+      data.writeInt(decoder.readInt() ^ Integer.MIN_VALUE);
+      return;
+    case LONG:
+      data.writeLong(decoder.readLong() ^ Long.MIN_VALUE);
+      return;
+    case FLOAT: {
+      int bits = Float.floatToIntBits(decoder.readFloat());
+      data.writeInt(bits ^ ((bits >> 31) | Integer.MIN_VALUE));
+      return;
+    }
+    case DOUBLE: {
+      long bits = Double.doubleToLongBits(decoder.readDouble());
+      data.writeLong(bits ^ ((bits >> 63) | Long.MIN_VALUE));
+      return;
+    }
+    case BOOLEAN:
+      data.write(decoder.readBoolean() ? 1 : 0);
+      return;
+    case ARRAY: {
+      Schema elementType = schema.getElementType();
+      for (long l = decoder.readArrayStart(); l != 0; l = decoder.arrayNext()) {
+        for (long i = 0; i < l; i++) {
+          data.write(1);
+          append(data, elementType);
+        }
+      }
+      data.write(0);
+      return;
+    }
+    case MAP:
+      throw new AvroRuntimeException("Can't compare maps!");
+    case UNION: {
+      int index = decoder.readIndex();
+      data.writeInt(index);
+      append(data, schema.getTypes().get(index));
+      return;
+    }
+    case FIXED: {
+      int size = schema.getFixedSize();
+      data.ensure(size);
+      decoder.readFixed(data.key, data.length, size);
+      data.length += size;
+      return;
+    }
+    case STRING:
+    case BYTES: {
+      int len = decoder.readInt();
+      data.writeEscaped(decoder.getBuf(), decoder.getPos(), len);
+      decoder.skipFixed(len);
+      return;
+    }
+    case NULL:
+      return;
+    default:
+      throw new AvroRuntimeException("Unexpected schema to build a sort key!");
+    }
+  }
+}
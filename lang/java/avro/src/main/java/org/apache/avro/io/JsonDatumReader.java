@@ -0,0 +1,397 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.AvroTypeException;
+import org.apache.avro.Conversion;
+import org.apache.avro.Conversions;
+import org.apache.avro.LogicalType;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.generic.GenericArray;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.util.Utf8;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * A {@link DatumReader} for Avro's JSON data encoding that reads directly from
+ * the JSON tokens of a {@link JsonDecoder}, without going through the decoder's
+ * grammar.
+ * <p/>
+ * The schema is compiled once into a tree of value readers. Record fields are
+ * looked up by name (or alias) in a per-record index as they appear in the
+ * input, so fields may come in any order without being buffered. The data is
+ * created using the configured {@link GenericData} model, including its logical
+ * type conversions, and is the same as what a
+ * {@link org.apache.avro.generic.GenericDatumReader} reading through the
+ * {@link JsonDecoder} produces.
+ * <p/>
+ * The {@link JsonDecoder} passed to {@link #read(Object, Decoder)} must only be
+ * used with this reader, since its grammar is not advanced.
+ */
+public class JsonDatumReader<D> implements DatumReader<D> {
+  private final GenericData data;
+  private ValueReader root;
+
+  public JsonDatumReader() {
+    this(GenericData.get());
+  }
+
+  public JsonDatumReader(Schema schema) {
+    this(schema, GenericData.get());
+  }
+
+  public JsonDatumReader(Schema schema, GenericData data) {
+    this(data);
+    setSchema(schema);
+  }
+
+  protected JsonDatumReader(GenericData data) {
+    this.data = Objects.requireNonNull(data, "GenericData cannot be null");
+  }
+
+  /** Return the {@link GenericData} implementation. */
+  public GenericData getData() {
+    return data;
+  }
+
+  @Override
+  public void setSchema(Schema schema) {
+    Objects.requireNonNull(schema, "Schema cannot be null");
+    this.root = compile(schema, new IdentityHashMap<>());
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public D read(D reuse, Decoder in) throws IOException {
+    if (!(in instanceof JsonDecoder)) {
+      throw new AvroRuntimeException("JsonDatumReader requires a JsonDecoder, got " + in);
+    }
+    if (root == null) {
+      throw new AvroRuntimeException("Schema has not been set");
+    }
+    JsonParser parser = ((JsonDecoder) in).getJsonParser();
+    if (parser.currentToken() == null) {
+      throw new EOFException();
+    }
+    return (D) root.read(reuse, parser);
+  }
+
+  /**
+   * Reads one value. The parser is positioned on the first token of the value,
+   * and left on the token following it.
+   */
+  private interface ValueReader {
+    Object read(Object reuse, JsonParser in) throws IOException;
+  }
+
+  private ValueReader compile(Schema schema, Map<Schema, ValueReader> seen) {
+    ValueReader reader = compileWithoutConversion(schema, seen);
+    LogicalType logicalType = schema.getLogicalType();
+    if (logicalType != null) {
+      Conversion<?> conversion = data.getConversionFor(logicalType);
+      if (conversion != null) {
+        ValueReader raw = reader;
+        reader = (reuse, in) -> Conversions.convertToLogicalType(raw.read(reuse, in), schema, logicalType, conversion);
+      }
+    }
+    return reader;
+  }
+
+  @SuppressWarnings("unchecked")
+  private ValueReader compileWithoutConversion(Schema schema, Map<Schema, ValueReader> seen) {
+    switch (schema.getType()) {
+    case RECORD: {
+      ValueReader compiled = seen.get(schema);
+      if (compiled != null) {
+        return compiled; // recursive reference
+      }
+      RecordReader record = new RecordReader(schema);
+      seen.put(schema, record);
+      record.init(seen);
+      return record;
+    }
+    case ENUM:
+      return (reuse, in) -> {
+        expect(in, JsonToken.VALUE_STRING, "enum");
+        String symbol = in.getText();
+        if (!schema.hasEnumSymbol(symbol)) {
+          throw new AvroTypeException("Unknown symbol in enum " + symbol);
+        }
+        in.nextToken();
+        return data.createEnum(symbol, schema);
+      };
+    case ARRAY: {
+      ValueReader element = compile(schema.getElementType(), seen);
+      return (reuse, in) -> {
+        expect(in, JsonToken.START_ARRAY, "array-start");
+        Collection<Object> array = (Collection<Object>) data.newArray(reuse, 0, schema);
+        in.nextToken();
+        while (in.currentToken() != JsonToken.END_ARRAY) {
+          Object old = array instanceof GenericArray ? ((GenericArray<?>) array).peek() : null;
+          array.add(element.read(old, in));
+        }
+        in.nextToken();
+        return array;
+      };
+    }
+    case MAP: {
+      ValueReader value = compile(schema.getValueType(), seen);
+      boolean stringKeys = isJavaString(schema);
+      return (reuse, in) -> {
+        expect(in, JsonToken.START_OBJECT, "map-start");
+        Map<Object, Object> map = (Map<Object, Object>) data.newMap(reuse, 0);
+        JsonToken t = in.nextToken();
+        while (t == JsonToken.FIELD_NAME) {
+          String key = in.currentName();
+          in.nextToken();
+          map.put(stringKeys ? key : new Utf8(key), value.read(null, in));
+          t = in.currentToken();
+        }
+        expect(in, JsonToken.END_OBJECT, "map-end");
+        in.nextToken();
+        return map;
+      };
+    }
+    case UNION:
+      return new UnionReader(schema, seen);
+    case FIXED: {
+      int size = schema.getFixedSize();
+      return (reuse, in) -> {
+        expect(in, JsonToken.VALUE_STRING, "fixed");
+        byte[] bytes = in.getText().getBytes(StandardCharsets.ISO_8859_1);
+        if (bytes.length != size) {
+          throw new AvroTypeException("Expected fixed length " + size + ", but got" + bytes.length);
+        }
+        in.nextToken();
+        return data.createFixed(reuse, bytes, schema);
+      };
+    }
+    case STRING:
+      if (isJavaString(schema)) {
+        return (reuse, in) -> {
+          expect(in, JsonToken.VALUE_STRING, "string");
+          String result = in.getText();
+          in.nextToken();
+          return result;
+        };
+      }
+      return (reuse, in) -> {
+        expect(in, JsonToken.VALUE_STRING, "string");
+        String text = in.getText();
+        in.nextToken();
+        return reuse instanceof Utf8 ? ((Utf8) reuse).set(text) : new Utf8(text);
+      };
+    case BYTES:
+      return (reuse, in) -> {
+        expect(in, JsonToken.VALUE_STRING, "bytes");
+        byte[] bytes = in.getText().getBytes(StandardCharsets.ISO_8859_1);
+        in.nextToken();
+        return ByteBuffer.wrap(bytes);
+      };
+    case INT:
+      return (reuse, in) -> {
+        expectNumber(in, "int");
+        int result = in.getIntValue();
+        in.nextToken();
+        return result;
+      };
+    case LONG:
+      return (reuse, in) -> {
+        expectNumber(in, "long");
+        long result = in.getLongValue();
+        in.nextToken();
+        return result;
+      };
+    case FLOAT:
+      return (reuse, in) -> {
+        expectNumber(in, "float");
+        float result = in.getFloatValue();
+        in.nextToken();
+        return result;
+      };
+    case DOUBLE:
+      return (reuse, in) -> {
+        expectNumber(in, "double");
+        double result = in.getDoubleValue();
+        in.nextToken();
+        return result;
+      };
+    case BOOLEAN:
+      return (reuse, in) -> {
+        JsonToken t = in.currentToken();
+        if (t != JsonToken.VALUE_TRUE && t != JsonToken.VALUE_FALSE) {
+          throw error(in, "boolean");
+        }
+        in.nextToken();
+        return t == JsonToken.VALUE_TRUE;
+      };
+    case NULL:
+      return (reuse, in) -> {
+        expect(in, JsonToken.VALUE_NULL, "null");
+        in.nextToken();
+        return null;
+      };
+    default:
+      throw new AvroRuntimeException("Unknown type: " + schema);
+    }
+  }
+
+  private static boolean isJavaString(Schema schema) {
+    return GenericData.StringType.String.name().equals(schema.getProp(GenericData.STRING_PROP));
+  }
+
+  private static void expect(JsonParser in, JsonToken expected, String type) {
+    if (in.currentToken() != expected) {
+      throw error(in, type);
+    }
+  }
+
+  private static void expectNumber(JsonParser in, String type) {
+    JsonToken t = in.currentToken();
+    if (t == null || !t.isNumeric()) {
+      throw error(in, type);
+    }
+  }
+
+  private static AvroTypeException error(JsonParser in, String type) {
+    return new AvroTypeException("Expected " + type + ". Got " + in.currentToken());
+  }
+
+  /** Reads record fields in the order they appear, looking them up by name. */
+  private final class RecordReader implements ValueReader {
+    private final Schema schema;
+    private final Map<String, Integer> fieldIndex = new HashMap<>();
+    private Field[] fields;
+    private ValueReader[] readers;
+
+    RecordReader(Schema schema) {
+      this.schema = schema;
+    }
+
+    void init(Map<Schema, ValueReader> seen) {
+      List<Field> schemaFields = schema.getFields();
+      fields = schemaFields.toArray(new Field[0]);
+      readers = new ValueReader[fields.length];
+      for (int i = 0; i < fields.length; i++) {
+        fieldIndex.put(fields[i].name(), i);
+        readers[i] = compile(fields[i].schema(), seen);
+      }
+      for (int i = 0; i < fields.length; i++) {
+        for (String alias : fields[i].aliases()) {
+          fieldIndex.putIfAbsent(alias, i);
+        }
+      }
+    }
+
+    @Override
+    public Object read(Object reuse, JsonParser in) throws IOException {
+      expect(in, JsonToken.START_OBJECT, "record-start");
+      Object record = data.newRecord(reuse, schema);
+      long seenMask = 0;
+      boolean[] seenFields = fields.length > Long.SIZE ? new boolean[fields.length] : null;
+      int seenCount = 0;
+      JsonToken t = in.nextToken();
+      while (t == JsonToken.FIELD_NAME) {
+        String name = in.currentName();
+        Integer index = fieldIndex.get(name);
+        if (index == null) {
+          throw new AvroTypeException("Unknown fields: [" + name + "]");
+        }
+        int i = index;
+        Field field = fields[i];
+        in.nextToken();
+        Object value = readers[i].read(data.getField(record, field.name(), field.pos()), in);
+        data.setField(record, field.name(), field.pos(), value);
+        if (seenFields == null) {
+          if ((seenMask & (1L << i)) == 0) {
+            seenMask |= 1L << i;
+            seenCount++;
+          }
+        } else if (!seenFields[i]) {
+          seenFields[i] = true;
+          seenCount++;
+        }
+        t = in.currentToken();
+      }
+      expect(in, JsonToken.END_OBJECT, "record-end");
+      if (seenCount != fields.length) {
+        for (int i = 0; i < fields.length; i++) {
+          boolean seen = seenFields == null ? (seenMask & (1L << i)) != 0 : seenFields[i];
+          if (!seen) {
+            throw new AvroTypeException("Expected field name not found: " + fields[i].name());
+          }
+        }
+      }
+      in.nextToken();
+      return record;
+    }
+  }
+
+  /** Reads {@code null} or a single-entry object keyed by the branch name. */
+  private final class UnionReader implements ValueReader {
+    private final Map<String, Integer> branchIndex = new HashMap<>();
+    private final ValueReader[] branches;
+
+    UnionReader(Schema schema, Map<Schema, ValueReader> seen) {
+      List<Schema> types = schema.getTypes();
+      branches = new ValueReader[types.size()];
+      for (int i = 0; i < branches.length; i++) {
+        branchIndex.put(types.get(i).getFullName(), i);
+        branches[i] = compile(types.get(i), seen);
+      }
+    }
+
+    @Override
+    public Object read(Object reuse, JsonParser in) throws IOException {
+      if (in.currentToken() == JsonToken.VALUE_NULL) {
+        return branches[branch("null")].read(reuse, in);
+      }
+      if (in.currentToken() != JsonToken.START_OBJECT || in.nextToken() != JsonToken.FIELD_NAME) {
+        throw error(in, "start-union");
+      }
+      int branch = branch(in.currentName());
+      in.nextToken();
+      Object value = branches[branch].read(reuse, in);
+      expect(in, JsonToken.END_OBJECT, "union-end");
+      in.nextToken();
+      return value;
+    }
+
+    private int branch(String label) {
+      Integer index = branchIndex.get(label);
+      if (index == null) {
+        throw new AvroTypeException("Unknown union branch " + label);
+      }
+      return index;
+    }
+  }
+}
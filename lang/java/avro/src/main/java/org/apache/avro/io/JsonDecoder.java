@@ -125,6 +125,14 @@ public class JsonDecoder extends ParsingDecoder implements Parser.ActionHandler
     return this;
   }
 
+  /**
+   * Returns the underlying JSON parser, positioned on the next value, for
+   * {@link JsonDatumReader}.
+   */
+  JsonParser getJsonParser() {
+    return in;
+  }
+
   private void advance(Symbol symbol) throws IOException {
     this.parser.processTrailingImplicitActions();
     if (in.getCurrentToken() == null && this.parser.depth() == 1)
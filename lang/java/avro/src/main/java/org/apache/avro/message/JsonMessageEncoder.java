@@ -0,0 +1,565 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.message;
+
+import org.apache.avro.AvroTypeException;
+import org.apache.avro.Conversion;
+import org.apache.avro.Conversions;
+import org.apache.avro.LogicalType;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.util.Utf8;
+import org.apache.avro.util.internal.ThreadLocalWithInitial;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link MessageEncoder} that encodes a datum as JSON, producing the same
+ * output as a {@link org.apache.avro.io.JsonEncoder} writing a single datum.
+ * <p>
+ * The schema is compiled once into a plan of writers: quoted and escaped field
+ * names, union branch names and enum symbols are computed in advance, and
+ * output is written as UTF-8 bytes into a thread-local buffer without going
+ * through a parser grammar or a JSON generator.
+ * <p>
+ * This class is thread-safe.
+ */
+public class JsonMessageEncoder<D> implements MessageEncoder<D> {
+
+  private static final ThreadLocal<Output> TEMP = ThreadLocalWithInitial.of(Output::new);
+
+  private static final byte[] NULL = bytes("null");
+  private static final byte[] TRUE = bytes("true");
+  private static final byte[] FALSE = bytes("false");
+  private static final byte[] HEX = bytes("0123456789ABCDEF");
+
+  private final boolean copyOutputBytes;
+  private final GenericData model;
+  private final ValueWriter plan;
+
+  /**
+   * Creates a new {@link JsonMessageEncoder} that uses the given
+   * {@link GenericData data model} to deconstruct datum instances described by
+   * the {@link Schema schema}.
+   * <p>
+   * Buffers returned by {@link JsonMessageEncoder#encode} are copied and will not
+   * be modified by future calls to {@code encode}.
+   *
+   * @param model  the {@link GenericData data model} for datum instances
+   * @param schema the {@link Schema} for datum instances
+   */
+  public JsonMessageEncoder(GenericData model, Schema schema) {
+    this(model, schema, true);
+  }
+
+  /**
+   * Creates a new {@link JsonMessageEncoder} that uses the given
+   * {@link GenericData data model} to deconstruct datum instances described by
+   * the {@link Schema schema}.
+   * <p>
+   * If {@code shouldCopy} is false, then buffers returned by {@code encode} wrap
+   * a thread-local buffer that can be reused by future calls to {@code encode}.
+   * Callers should only set {@code shouldCopy} to false if the buffer will be
+   * copied before the current thread's next call to {@code encode}.
+   *
+   * @param model      the {@link GenericData data model} for datum instances
+   * @param schema     the {@link Schema} for datum instances
+   * @param shouldCopy whether to copy buffers before returning encoded results
+   */
+  public JsonMessageEncoder(GenericData model, Schema schema, boolean shouldCopy) {
+    this.copyOutputBytes = shouldCopy;
+    this.model = model;
+    this.plan = compile(schema, new IdentityHashMap<>());
+  }
+
+  @Override
+  public ByteBuffer encode(D datum) throws IOException {
+    Output out = write(datum);
+    if (copyOutputBytes) {
+      return ByteBuffer.wrap(Arrays.copyOf(out.buf, out.count));
+    } else {
+      return ByteBuffer.wrap(out.buf, 0, out.count);
+    }
+  }
+
+  @Override
+  public void encode(D datum, OutputStream stream) throws IOException {
+    Output out = write(datum);
+    stream.write(out.buf, 0, out.count);
+  }
+
+  /**
+   * Encodes a datum into the given buffer, starting at its current position.
+   *
+   * @param datum  a datum to encode
+   * @param buffer a buffer to write the JSON bytes to
+   * @throws java.nio.BufferOverflowException if the buffer has too little space
+   *                                          remaining
+   */
+  public void encode(D datum, ByteBuffer buffer) {
+    Output out = write(datum);
+    buffer.put(out.buf, 0, out.count);
+  }
+
+  private Output write(D datum) {
+    Output out = TEMP.get();
+    out.reset();
+    plan.write(datum, out);
+    return out;
+  }
+
+  private ValueWriter compile(Schema schema, Map<Schema, ValueWriter> seen) {
+    ValueWriter writer = seen.get(schema);
+    if (writer != null) {
+      return writer;
+    }
+    writer = compileWithoutConversion(schema, seen);
+    LogicalType logicalType = schema.getLogicalType();
+    if (logicalType != null) {
+      writer = new ConvertingWriter(schema, logicalType, writer);
+    }
+    seen.put(schema, writer);
+    return writer;
+  }
+
+  private ValueWriter compileWithoutConversion(Schema schema, Map<Schema, ValueWriter> seen) {
+    switch (schema.getType()) {
+    case RECORD: {
+      RecordWriter writer = new RecordWriter(schema.getFields().size());
+      seen.put(schema, writer); // before fields, for recursive schemas
+      List<Field> fields = schema.getFields();
+      for (int i = 0; i < fields.size(); i++) {
+        Field field = fields.get(i);
+        writer.names[i] = bytes((i == 0 ? "{" : ",") + quote(field.name()) + ":");
+        writer.fields[i] = field;
+        writer.writers[i] = compile(field.schema(), seen);
+      }
+      return writer;
+    }
+    case ENUM:
+      return new EnumWriter(schema);
+    case ARRAY:
+      return new ArrayWriter(compile(schema.getElementType(), seen));
+    case MAP:
+      return new MapWriter(compile(schema.getValueType(), seen));
+    case UNION: {
+      List<Schema> types = schema.getTypes();
+      UnionWriter writer = new UnionWriter(schema, types.size());
+      for (int i = 0; i < types.size(); i++) {
+        Schema type = types.get(i);
+        writer.prefixes[i] = type.getType() == Schema.Type.NULL ? null : bytes("{" + quote(type.getFullName()) + ":");
+        writer.writers[i] = compile(type, seen);
+      }
+      return writer;
+    }
+    case FIXED:
+      return (datum, out) -> {
+        byte[] bytes = ((GenericFixed) datum).bytes();
+        out.writeLatin1(bytes, 0, schema.getFixedSize());
+      };
+    case STRING:
+      return (datum, out) -> {
+        if (datum instanceof Utf8) {
+          Utf8 utf8 = (Utf8) datum;
+          out.writeUtf8(utf8.getBytes(), utf8.getByteLength());
+        } else {
+          out.writeString(datum.toString());
+        }
+      };
+    case BYTES:
+      return (datum, out) -> {
+        ByteBuffer bytes = (ByteBuffer) datum;
+        if (bytes.hasArray()) {
+          out.writeLatin1(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        } else {
+          byte[] copy = new byte[bytes.remaining()];
+          bytes.duplicate().get(copy);
+          out.writeLatin1(copy, 0, copy.length);
+        }
+      };
+    case INT:
+      return (datum, out) -> out.writeLong(((Number) datum).intValue());
+    case LONG:
+      return (datum, out) -> out.writeLong(((Number) datum).longValue());
+    case FLOAT:
+      return (datum, out) -> {
+        float f = ((Number) datum).floatValue();
+        out.writeNumber(Float.toString(f), Float.isNaN(f) || Float.isInfinite(f));
+      };
+    case DOUBLE:
+      return (datum, out) -> {
+        double d = ((Number) datum).doubleValue();
+        out.writeNumber(Double.toString(d), Double.isNaN(d) || Double.isInfinite(d));
+      };
+    case BOOLEAN:
+      return (datum, out) -> out.write((Boolean) datum ? TRUE : FALSE);
+    case NULL:
+      return (datum, out) -> {
+        if (datum != null) {
+          throw new AvroTypeException("Not null: " + datum);
+        }
+        out.write(NULL);
+      };
+    default:
+      throw new AvroTypeException("Unknown type: " + schema);
+    }
+  }
+
+  private static String quote(String s) {
+    Output out = new Output();
+    out.writeString(s);
+    return new String(out.buf, 0, out.count, StandardCharsets.UTF_8);
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private interface ValueWriter {
+    void write(Object datum, Output out);
+  }
+
+  private class ConvertingWriter implements ValueWriter {
+    private final Schema schema;
+    private final LogicalType logicalType;
+    private final ValueWriter writer;
+
+    ConvertingWriter(Schema schema, LogicalType logicalType, ValueWriter writer) {
+      this.schema = schema;
+      this.logicalType = logicalType;
+      this.writer = writer;
+    }
+
+    @Override
+    public void write(Object datum, Output out) {
+      if (datum != null) {
+        Conversion<?> conversion = model.getConversionByClass(datum.getClass(), logicalType);
+        if (conversion != null) {
+          datum = convert(conversion, datum);
+        }
+      }
+      writer.write(datum, out);
+    }
+
+    private <T> Object convert(Conversion<T> conversion, Object datum) {
+      return Conversions.convertToRawType(datum, schema, logicalType, conversion);
+    }
+  }
+
+  private class RecordWriter implements ValueWriter {
+    private final byte[][] names;
+    private final Field[] fields;
+    private final ValueWriter[] writers;
+
+    RecordWriter(int size) {
+      this.names = new byte[size][];
+      this.fields = new Field[size];
+      this.writers = new ValueWriter[size];
+    }
+
+    @Override
+    public void write(Object datum, Output out) {
+      if (fields.length == 0) {
+        out.write('{');
+      }
+      for (int i = 0; i < fields.length; i++) {
+        Field field = fields[i];
+        out.write(names[i]);
+        writers[i].write(model.getField(datum, field.name(), field.pos()), out);
+      }
+      out.write('}');
+    }
+  }
+
+  private static class EnumWriter implements ValueWriter {
+    private final Schema schema;
+    private final Map<String, byte[]> symbols = new HashMap<>();
+
+    EnumWriter(Schema schema) {
+      this.schema = schema;
+      for (String symbol : schema.getEnumSymbols()) {
+        symbols.put(symbol, bytes(quote(symbol)));
+      }
+    }
+
+    @Override
+    public void write(Object datum, Output out) {
+      byte[] symbol = symbols.get(datum.toString());
+      if (symbol == null) {
+        throw new AvroTypeException("Not an enum symbol of " + schema.getFullName() + ": " + datum);
+      }
+      out.write(symbol);
+    }
+  }
+
+  private static class ArrayWriter implements ValueWriter {
+    private final ValueWriter elementWriter;
+
+    ArrayWriter(ValueWriter elementWriter) {
+      this.elementWriter = elementWriter;
+    }
+
+    @Override
+    public void write(Object datum, Output out) {
+      out.write('[');
+      boolean first = true;
+      for (Object element : (Collection<?>) datum) {
+        if (!first) {
+          out.write(',');
+        }
+        first = false;
+        elementWriter.write(element, out);
+      }
+      out.write(']');
+    }
+  }
+
+  private static class MapWriter implements ValueWriter {
+    private final ValueWriter valueWriter;
+
+    MapWriter(ValueWriter valueWriter) {
+      this.valueWriter = valueWriter;
+    }
+
+    @Override
+    public void write(Object datum, Output out) {
+      out.write('{');
+      boolean first = true;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) datum).entrySet()) {
+        if (!first) {
+          out.write(',');
+        }
+        first = false;
+        out.writeString(entry.getKey().toString());
+        out.write(':');
+        valueWriter.write(entry.getValue(), out);
+      }
+      out.write('}');
+    }
+  }
+
+  private class UnionWriter implements ValueWriter {
+    private final Schema schema;
+    private final byte[][] prefixes;
+    private final ValueWriter[] writers;
+
+    UnionWriter(Schema schema, int size) {
+      this.schema = schema;
+      this.prefixes = new byte[size][];
+      this.writers = new ValueWriter[size];
+    }
+
+    @Override
+    public void write(Object datum, Output out) {
+      int index = model.resolveUnion(schema, datum);
+      byte[] prefix = prefixes[index];
+      if (prefix == null) {
+        out.write(NULL);
+      } else {
+        out.write(prefix);
+        writers[index].write(datum, out);
+        out.write('}');
+      }
+    }
+  }
+
+  /**
+   * A growable buffer of UTF-8 JSON output, escaping strings as Jackson does.
+   */
+  private static class Output {
+    private byte[] buf = new byte[256];
+    private int count;
+
+    void reset() {
+      if (buf.length > 1024 * 1024) { // don't pin large buffers
+        buf = new byte[256];
+      }
+      count = 0;
+    }
+
+    private void ensure(int n) {
+      if (count + n > buf.length) {
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + n));
+      }
+    }
+
+    void write(int b) {
+      ensure(1);
+      buf[count++] = (byte) b;
+    }
+
+    void write(byte[] bytes) {
+      ensure(bytes.length);
+      System.arraycopy(bytes, 0, buf, count, bytes.length);
+      count += bytes.length;
+    }
+
+    void writeLong(long n) {
+      if (n == Long.MIN_VALUE) {
+        write(bytes(Long.toString(n)));
+        return;
+      }
+      ensure(20);
+      if (n < 0) {
+        buf[count++] = '-';
+        n = -n;
+      }
+      int digits = 1;
+      for (long m = n; m >= 10; m /= 10) {
+        digits++;
+      }
+      int end = count + digits;
+      for (int i = end - 1; i >= count; i--) {
+        buf[i] = (byte) ('0' + (n % 10));
+        n /= 10;
+      }
+      count = end;
+    }
+
+    void writeNumber(String number, boolean quoted) {
+      int len = number.length();
+      ensure(len + 2);
+      if (quoted) {
+        buf[count++] = '"';
+      }
+      for (int i = 0; i < len; i++) {
+        buf[count++] = (byte) number.charAt(i);
+      }
+      if (quoted) {
+        buf[count++] = '"';
+      }
+    }
+
+    /** Write an ASCII character, escaping it as required within a string. */
+    private void writeEscapedAscii(int c) {
+      if (c >= 0x20 && c != '"' && c != '\\') {
+        buf[count++] = (byte) c;
+        return;
+      }
+      buf[count++] = '\\';
+      switch (c) {
+      case '"':
+      case '\\':
+        buf[count++] = (byte) c;
+        break;
+      case '\b':
+        buf[count++] = 'b';
+        break;
+      case '\t':
+        buf[count++] = 't';
+        break;
+      case '\n':
+        buf[count++] = 'n';
+        break;
+      case '\f':
+        buf[count++] = 'f';
+        break;
+      case '\r':
+        buf[count++] = 'r';
+        break;
+      default:
+        buf[count++] = 'u';
+        buf[count++] = '0';
+        buf[count++] = '0';
+        buf[count++] = HEX[c >> 4];
+        buf[count++] = HEX[c & 0xF];
+      }
+    }
+
+    private void writeEscapedChar(char c) {
+      buf[count++] = '\\';
+      buf[count++] = 'u';
+      buf[count++] = HEX[c >> 12];
+      buf[count++] = HEX[(c >> 8) & 0xF];
+      buf[count++] = HEX[(c >> 4) & 0xF];
+      buf[count++] = HEX[c & 0xF];
+    }
+
+    /** Write a quoted string from UTF-8 bytes. */
+    void writeUtf8(byte[] bytes, int len) {
+      ensure(len * 6 + 2);
+      buf[count++] = '"';
+      for (int i = 0; i < len; i++) {
+        int b = bytes[i];
+        if ((b & 0xF8) == 0xF0 && i + 3 < len) { // outside the BMP, escaped
+          int cp = ((b & 0x07) << 18) | ((bytes[i + 1] & 0x3F) << 12) | ((bytes[i + 2] & 0x3F) << 6)
+              | (bytes[i + 3] & 0x3F);
+          writeEscapedChar(Character.highSurrogate(cp));
+          writeEscapedChar(Character.lowSurrogate(cp));
+          i += 3;
+        } else if (b < 0) { // part of a multi-byte sequence, copied as is
+          buf[count++] = (byte) b;
+        } else {
+          writeEscapedAscii(b);
+        }
+      }
+      buf[count++] = '"';
+    }
+
+    /** Write a quoted string of ISO-8859-1 characters, as used for bytes. */
+    void writeLatin1(byte[] bytes, int start, int len) {
+      ensure(len * 6 + 2);
+      buf[count++] = '"';
+      for (int i = start, end = start + len; i < end; i++) {
+        int c = bytes[i] & 0xFF;
+        if (c < 0x80) {
+          writeEscapedAscii(c);
+        } else {
+          buf[count++] = (byte) (0xC0 | (c >> 6));
+          buf[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+      }
+      buf[count++] = '"';
+    }
+
+    /** Write a quoted string, encoding it as UTF-8. */
+    void writeString(String s) {
+      int len = s.length();
+      ensure(len * 6 + 2);
+      buf[count++] = '"';
+      for (int i = 0; i < len; i++) {
+        char c = s.charAt(i);
+        if (c < 0x80) {
+          writeEscapedAscii(c);
+        } else if (c < 0x800) {
+          buf[count++] = (byte) (0xC0 | (c >> 6));
+          buf[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isSurrogate(c)) { // outside the BMP, escaped
+          writeEscapedChar(c);
+        } else {
+          buf[count++] = (byte) (0xE0 | (c >> 12));
+          buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+          buf[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+      }
+      buf[count++] = '"';
+    }
+  }
+}
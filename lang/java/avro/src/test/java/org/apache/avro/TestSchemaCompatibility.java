@@ -79,6 +79,7 @@ import static org.apache.avro.TestSchemas.list;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
@@ -129,6 +130,34 @@ public class TestSchemaCompatibility {
     assertEquals(expectedResult, checkReaderWriterCompatibility(reader, WRITER_SCHEMA));
   }
 
+  @Test
+  public void testCachedResultsUseCallerSchemas() {
+    final String json = "{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"a\",\"type\":\"int\"}]}";
+    final Schema reader1 = new Schema.Parser().parse(json);
+    final Schema reader2 = new Schema.Parser().parse(json);
+    final SchemaPairCompatibility first = checkReaderWriterCompatibility(reader1, EMPTY_RECORD1);
+    final SchemaPairCompatibility second = checkReaderWriterCompatibility(reader2, EMPTY_RECORD1);
+    assertEquals(first.getResult(), second.getResult());
+    assertEquals(first.getDescription(), second.getDescription());
+    assertSame(reader2, second.getReader());
+    assertSame(EMPTY_RECORD1, second.getWriter());
+  }
+
+  @Test
+  public void testCacheDistinguishesFieldDefaults() {
+    // Both readers have the same parsing canonical form, only the default differs.
+    final Schema withoutDefault = new Schema.Parser()
+        .parse("{\"type\":\"record\",\"name\":\"Record1\",\"fields\":[{\"name\":\"a\",\"type\":\"int\"}]}");
+    final Schema withDefault = new Schema.Parser().parse(
+        "{\"type\":\"record\",\"name\":\"Record1\",\"fields\":[{\"name\":\"a\",\"type\":\"int\",\"default\":0}]}");
+    assertEquals(SchemaCompatibilityType.INCOMPATIBLE,
+        checkReaderWriterCompatibility(withoutDefault, EMPTY_RECORD1).getType());
+    assertEquals(SchemaCompatibilityType.COMPATIBLE,
+        checkReaderWriterCompatibility(withDefault, EMPTY_RECORD1).getType());
+    assertEquals(SchemaCompatibilityType.INCOMPATIBLE,
+        checkReaderWriterCompatibility(withoutDefault, EMPTY_RECORD1).getType());
+  }
+
   @Test
   public void testValidateSchemaPairMissingSecondField() {
     final List<Schema.Field> readerFields = list(new Schema.Field("oldfield2", STRING_SCHEMA, null, null));
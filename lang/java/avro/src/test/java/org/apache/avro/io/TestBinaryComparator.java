@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.util.RandomData;
+import org.junit.Test;
+
+public class TestBinaryComparator {
+
+  /** A schema with every comparable type and order, also used by other tests. */
+  static final Schema SCHEMA = new Schema.Parser()
+      .parse("{\"type\":\"record\",\"name\":\"R\",\"fields\":[{\"name\":\"i\",\"type\":\"int\"},"
+          + "{\"name\":\"ignored\",\"type\":{\"type\":\"map\",\"values\":\"long\"},\"order\":\"ignore\"},"
+          + "{\"name\":\"l\",\"type\":\"long\",\"order\":\"descending\"},{\"name\":\"f\",\"type\":\"float\"},"
+          + "{\"name\":\"d\",\"type\":\"double\"},{\"name\":\"b\",\"type\":\"boolean\"},"
+          + "{\"name\":\"s\",\"type\":\"string\"},{\"name\":\"by\",\"type\":\"bytes\"},"
+          + "{\"name\":\"e\",\"type\":{\"type\":\"enum\",\"name\":\"E\",\"symbols\":[\"X\",\"Y\",\"Z\"]}},"
+          + "{\"name\":\"fx\",\"type\":{\"type\":\"fixed\",\"name\":\"F\",\"size\":3}},"
+          + "{\"name\":\"u\",\"type\":[\"null\",\"int\",\"string\"]},"
+          + "{\"name\":\"a\",\"type\":{\"type\":\"array\",\"items\":\"int\"}},"
+          + "{\"name\":\"next\",\"type\":[\"null\",\"R\"]}]}");
+
+  static byte[] encode(Schema schema, Object datum) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+    new GenericDatumWriter<>(schema).write(datum, encoder);
+    encoder.flush();
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testConsistentWithBinaryData() throws IOException {
+    List<Object> data = new ArrayList<>();
+    List<byte[]> encoded = new ArrayList<>();
+    for (Object datum : new RandomData(SCHEMA, 40, 42L)) {
+      data.add(datum);
+      encoded.add(encode(SCHEMA, datum));
+    }
+    // add duplicates so that equal values and deep comparisons are exercised
+    data.add(data.get(0));
+    encoded.add(encoded.get(0));
+
+    BinaryComparator comparator = new BinaryComparator(SCHEMA);
+    for (int i = 0; i < encoded.size(); i++) {
+      for (int j = 0; j < encoded.size(); j++) {
+        byte[] b1 = encoded.get(i), b2 = encoded.get(j);
+        int expected = Integer.signum(BinaryData.compare(b1, 0, b2, 0, SCHEMA));
+        assertEquals(expected, Integer.signum(comparator.compare(b1, 0, b2, 0)));
+        assertEquals(expected, Integer.signum(GenericData.get().compare(data.get(i), data.get(j), SCHEMA)));
+      }
+    }
+  }
+
+  @Test
+  public void testOffsets() throws IOException {
+    Schema schema = Schema.create(Schema.Type.STRING);
+    byte[] prefix = encode(schema, "prefix");
+    byte[] a = encode(schema, "apple");
+    byte[] b = encode(schema, "banana");
+    byte[] b1 = new byte[prefix.length + a.length];
+    System.arraycopy(prefix, 0, b1, 0, prefix.length);
+    System.arraycopy(a, 0, b1, prefix.length, a.length);
+
+    BinaryComparator comparator = new BinaryComparator(schema);
+    assertEquals(-1, Integer.signum(comparator.compare(b1, prefix.length, b, 0)));
+    assertEquals(1, Integer.signum(comparator.compare(b, 0, b1, prefix.length)));
+    assertEquals(0, comparator.compare(b1, prefix.length, a, 0));
+  }
+
+  @Test(expected = AvroRuntimeException.class)
+  public void testMapsNotComparable() throws IOException {
+    Schema schema = new Schema.Parser().parse("{\"type\":\"map\",\"values\":\"int\"}");
+    byte[] b = encode(schema, new HashMap<>());
+    new BinaryComparator(schema).compare(b, 0, b, 0);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.io;
+
+import static org.apache.avro.io.TestBinaryComparator.encode;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.util.RandomData;
+import org.junit.Test;
+
+public class TestBinarySortKey {
+
+  private static void assertSameOrder(Schema schema, List<byte[]> encoded) {
+    List<byte[]> keys = new ArrayList<>();
+    for (byte[] bytes : encoded) {
+      keys.add(BinarySortKey.toSortKey(bytes, 0, bytes.length, schema));
+    }
+    for (int i = 0; i < encoded.size(); i++) {
+      for (int j = 0; j < encoded.size(); j++) {
+        byte[] b1 = encoded.get(i), b2 = encoded.get(j);
+        byte[] k1 = keys.get(i), k2 = keys.get(j);
+        assertEquals(Integer.signum(BinaryData.compare(b1, 0, b2, 0, schema)),
+            Integer.signum(BinaryData.compareBytes(k1, 0, k1.length, k2, 0, k2.length)));
+      }
+    }
+  }
+
+  @Test
+  public void testRandomRecords() throws IOException {
+    Schema schema = TestBinaryComparator.SCHEMA;
+    List<byte[]> encoded = new ArrayList<>();
+    for (Object datum : new RandomData(schema, 60, 7L)) {
+      encoded.add(encode(schema, datum));
+    }
+    encoded.add(encoded.get(0));
+    assertSameOrder(schema, encoded);
+  }
+
+  @Test
+  public void testDescendingPrefixes() throws IOException {
+    // a flipped terminator must still sort a descending prefix after longer values
+    Schema schema = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"R\",\"fields\":["
+        + "{\"name\":\"s\",\"type\":\"string\",\"order\":\"descending\"},"
+        + "{\"name\":\"by\",\"type\":\"bytes\",\"order\":\"descending\"}]}");
+    List<byte[]> encoded = new ArrayList<>();
+    for (String s : new String[] { "", "a", "a\u0000", "a\u0000b", "ab", "b" }) {
+      GenericRecord record = new GenericData.Record(schema);
+      record.put("s", s);
+      record.put("by", ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8)));
+      encoded.add(encode(schema, record));
+    }
+    assertSameOrder(schema, encoded);
+  }
+
+  @Test
+  public void testIgnoredFieldsAndOffsets() throws IOException {
+    Schema schema = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"R\",\"fields\":["
+        + "{\"name\":\"i\",\"type\":\"int\"}," + "{\"name\":\"ignored\",\"type\":\"string\",\"order\":\"ignore\"}]}");
+    GenericRecord record = new GenericData.Record(schema);
+    record.put("i", 3);
+    record.put("ignored", "x");
+    byte[] a = encode(schema, record);
+    record.put("ignored", "yy");
+    byte[] b = encode(schema, record);
+    byte[] key = BinarySortKey.toSortKey(a, 0, a.length, schema);
+    assertArrayEquals(key, BinarySortKey.toSortKey(b, 0, b.length, schema));
+
+    byte[] prefixed = new byte[a.length + 3];
+    System.arraycopy(a, 0, prefixed, 3, a.length);
+    assertArrayEquals(key, BinarySortKey.toSortKey(prefixed, 3, a.length, schema));
+  }
+
+  @Test
+  public void testNumbers() throws IOException {
+    Schema doubles = Schema.create(Schema.Type.DOUBLE);
+    List<byte[]> encoded = new ArrayList<>();
+    for (double d : new double[] { Double.NEGATIVE_INFINITY, -1e300, -1.5, -0.0, 0.0, Double.MIN_VALUE, 2.5,
+        Double.POSITIVE_INFINITY, Double.NaN }) {
+      encoded.add(encode(doubles, d));
+    }
+    assertSameOrder(doubles, encoded);
+
+    Schema longs = Schema.create(Schema.Type.LONG);
+    encoded.clear();
+    for (long l : new long[] { Long.MIN_VALUE, -300, -1, 0, 1, 127, 128, Long.MAX_VALUE }) {
+      encoded.add(encode(longs, l));
+    }
+    assertSameOrder(longs, encoded);
+  }
+
+  @Test
+  public void testPrefixesAndZeroBytes() throws IOException {
+    Schema strings = new Schema.Parser().parse("{\"type\":\"array\",\"items\":\"string\"}");
+    List<byte[]> encoded = new ArrayList<>();
+    for (List<String> a : Arrays.asList(Arrays.<String>asList(), Arrays.asList(""), Arrays.asList("", ""),
+        Arrays.asList("a"), Arrays.asList("a\u0000"), Arrays.asList("a", "b"), Arrays.asList("a\u0000b"),
+        Arrays.asList("ab"), Arrays.asList("\u00ff"))) {
+      encoded.add(encode(strings, a));
+    }
+    assertSameOrder(strings, encoded);
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.AvroTypeException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.util.RandomData;
+import org.junit.Test;
+
+public class TestJsonDatumReader {
+
+  private static final Schema SCHEMA = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"R\",\"fields\":["
+      + "{\"name\":\"n\",\"type\":\"null\"},{\"name\":\"b\",\"type\":\"boolean\"},"
+      + "{\"name\":\"i\",\"type\":\"int\"},{\"name\":\"l\",\"type\":\"long\"},"
+      + "{\"name\":\"f\",\"type\":\"float\"},{\"name\":\"d\",\"type\":\"double\"},"
+      + "{\"name\":\"s\",\"type\":\"string\"},{\"name\":\"by\",\"type\":\"bytes\"},"
+      + "{\"name\":\"e\",\"type\":{\"type\":\"enum\",\"name\":\"E\",\"symbols\":[\"X\",\"Y\",\"Z\"]}},"
+      + "{\"name\":\"fx\",\"type\":{\"type\":\"fixed\",\"name\":\"F\",\"size\":3}},"
+      + "{\"name\":\"u\",\"type\":[\"null\",\"int\",\"string\",\"F\"]},"
+      + "{\"name\":\"a\",\"type\":{\"type\":\"array\",\"items\":\"long\"}},"
+      + "{\"name\":\"m\",\"type\":{\"type\":\"map\",\"values\":\"string\"}},"
+      + "{\"name\":\"next\",\"type\":[\"null\",\"R\"]}]}");
+
+  private static final Schema POINT = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"P\",\"fields\":["
+      + "{\"name\":\"x\",\"type\":\"int\"},{\"name\":\"y\",\"type\":\"int\",\"aliases\":[\"why\"]}]}");
+
+  private static String toJson(Schema schema, Iterable<Object> data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JsonEncoder encoder = EncoderFactory.get().jsonEncoder(schema, out);
+    GenericDatumWriter<Object> writer = new GenericDatumWriter<>(schema);
+    for (Object datum : data) {
+      writer.write(datum, encoder);
+    }
+    encoder.flush();
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static List<Object> readAll(DatumReader<Object> reader, Decoder in, int count) throws IOException {
+    List<Object> result = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      result.add(reader.read(null, in));
+    }
+    return result;
+  }
+
+  @Test
+  public void testSameAsGenericDatumReader() throws IOException {
+    List<Object> data = new ArrayList<>();
+    new RandomData(SCHEMA, 50, 17L).forEach(data::add);
+    String json = toJson(SCHEMA, data);
+
+    List<Object> expected = readAll(new GenericDatumReader<>(SCHEMA), DecoderFactory.get().jsonDecoder(SCHEMA, json),
+        data.size());
+    List<Object> actual = readAll(new JsonDatumReader<>(SCHEMA), DecoderFactory.get().jsonDecoder(SCHEMA, json),
+        data.size());
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testOutOfOrderFieldsAndAliases() throws IOException {
+    JsonDecoder in = DecoderFactory.get().jsonDecoder(POINT, "{\"y\":2,\"x\":1} {\"x\":3,\"why\":4}");
+    JsonDatumReader<GenericRecord> reader = new JsonDatumReader<>(POINT);
+    GenericRecord first = reader.read(null, in);
+    assertEquals(1, first.get("x"));
+    assertEquals(2, first.get("y"));
+    GenericRecord second = reader.read(first, in);
+    assertEquals(3, second.get("x"));
+    assertEquals(4, second.get("y"));
+  }
+
+  @Test(expected = EOFException.class)
+  public void testEndOfInput() throws IOException {
+    JsonDecoder in = DecoderFactory.get().jsonDecoder(POINT, "{\"x\":1,\"y\":2}");
+    JsonDatumReader<GenericRecord> reader = new JsonDatumReader<>(POINT);
+    reader.read(null, in);
+    reader.read(null, in);
+  }
+
+  @Test(expected = AvroTypeException.class)
+  public void testMissingField() throws IOException {
+    new JsonDatumReader<>(POINT).read(null, DecoderFactory.get().jsonDecoder(POINT, "{\"x\":1}"));
+  }
+
+  @Test(expected = AvroTypeException.class)
+  public void testUnknownField() throws IOException {
+    new JsonDatumReader<>(POINT).read(null, DecoderFactory.get().jsonDecoder(POINT, "{\"x\":1,\"y\":2,\"z\":3}"));
+  }
+}
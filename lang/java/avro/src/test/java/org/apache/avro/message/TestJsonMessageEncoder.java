@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.message;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.avro.AvroTypeException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.io.JsonEncoder;
+import org.apache.avro.util.RandomData;
+import org.apache.avro.util.Utf8;
+import org.junit.Test;
+
+public class TestJsonMessageEncoder {
+
+  private static final Schema SCHEMA = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"R\","
+      + "\"namespace\":\"org.test\",\"fields\":[{\"name\":\"n\",\"type\":\"null\"},"
+      + "{\"name\":\"b\",\"type\":\"boolean\"},{\"name\":\"i\",\"type\":\"int\"},{\"name\":\"l\",\"type\":\"long\"},"
+      + "{\"name\":\"f\",\"type\":\"float\"},{\"name\":\"d\",\"type\":\"double\"},"
+      + "{\"name\":\"s\",\"type\":\"string\"},{\"name\":\"by\",\"type\":\"bytes\"},"
+      + "{\"name\":\"e\",\"type\":{\"type\":\"enum\",\"name\":\"E\",\"symbols\":[\"X\",\"Y\",\"Z\"]}},"
+      + "{\"name\":\"fx\",\"type\":{\"type\":\"fixed\",\"name\":\"F\",\"size\":3}},"
+      + "{\"name\":\"u\",\"type\":[\"null\",\"int\",\"string\",\"F\"]},"
+      + "{\"name\":\"a\",\"type\":{\"type\":\"array\",\"items\":\"long\"}},"
+      + "{\"name\":\"m\",\"type\":{\"type\":\"map\",\"values\":\"string\"}},"
+      + "{\"name\":\"next\",\"type\":[\"null\",\"R\"]}]}");
+
+  private static String toJson(Schema schema, Object datum) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JsonEncoder encoder = EncoderFactory.get().jsonEncoder(schema, out);
+    new GenericDatumWriter<>(schema).write(datum, encoder);
+    encoder.flush();
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static String toString(ByteBuffer buffer) {
+    return new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(),
+        StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testSameAsJsonEncoder() throws IOException {
+    JsonMessageEncoder<Object> encoder = new JsonMessageEncoder<>(GenericData.get(), SCHEMA);
+    for (Object datum : new RandomData(SCHEMA, 100, 31L)) {
+      assertEquals(toJson(SCHEMA, datum), toString(encoder.encode(datum)));
+    }
+  }
+
+  @Test
+  public void testEscapesAndSpecialNumbers() throws IOException {
+    GenericRecord record = (GenericRecord) new RandomData(SCHEMA, 1, 5L).iterator().next();
+    record.put("s", "q\"b\\s/\b\t\n\f\r\u0001\u001fé€😀");
+    record.put("by", ByteBuffer.wrap(new byte[] { 0, 34, 92, 127, (byte) 128, (byte) 255 }));
+    record.put("f", Float.NaN);
+    record.put("d", Double.NEGATIVE_INFINITY);
+    record.put("i", Integer.MIN_VALUE);
+    record.put("l", Long.MIN_VALUE);
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("k\"ey", "v\u0000");
+    map.put("utf8", new Utf8("é😀\u001b"));
+    record.put("m", map);
+    record.put("a", Arrays.asList(0L, -1L, Long.MAX_VALUE));
+    record.put("u", "str");
+
+    JsonMessageEncoder<GenericRecord> encoder = new JsonMessageEncoder<>(GenericData.get(), SCHEMA);
+    assertEquals(toJson(SCHEMA, record), toString(encoder.encode(record)));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    encoder.encode(record, out);
+    assertEquals(toJson(SCHEMA, record), new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+    ByteBuffer buffer = ByteBuffer.allocate(4096);
+    encoder.encode(record, buffer);
+    buffer.flip();
+    assertEquals(toJson(SCHEMA, record), toString(buffer));
+  }
+
+  @Test
+  public void testCopiedBuffers() throws IOException {
+    Schema schema = Schema.create(Schema.Type.STRING);
+    JsonMessageEncoder<String> encoder = new JsonMessageEncoder<>(GenericData.get(), schema);
+    ByteBuffer first = encoder.encode("first");
+    encoder.encode("second");
+    assertEquals("\"first\"", toString(first));
+  }
+
+  @Test(expected = AvroTypeException.class)
+  public void testBadEnumSymbol() throws IOException {
+    Schema schema = SCHEMA.getField("e").schema();
+    new JsonMessageEncoder<>(GenericData.get(), schema).encode(new GenericData.EnumSymbol(schema, "W"));
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.ipc.netty;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.ipc.HandshakeRequest;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.util.ByteBufferInputStream;
+import org.apache.avro.util.ByteBufferOutputStream;
+
+/**
+ * Limits the calls a {@link NettyServer} responds to concurrently, overall and
+ * per message. Calls over a limit wait in a bounded queue, and calls that don't
+ * fit in the queue fail immediately with a system error, so that an overloaded
+ * server answers quickly rather than growing its latency and heap without
+ * bound.
+ * <p>
+ * With a target latency, the overall limit adapts to the latency observed: it
+ * is decreased while the average latency is above the target, and increased
+ * while it's below and calls are waiting, but never above the configured
+ * maximum.
+ * <p>
+ * Calls that carry a handshake count towards the limits, but are queued rather
+ * than rejected, since their response must complete the handshake. Rejected
+ * one-way calls are dropped.
+ */
+public class AdmissionControl {
+  private static final double DECREASE = 0.9;
+  private static final double SMOOTHING = 0.1;
+
+  private static final SpecificDatumReader<HandshakeRequest> HANDSHAKE_READER = new SpecificDatumReader<>(
+      HandshakeRequest.class);
+
+  private final int maxConcurrent;
+  private final int maxQueued;
+  private final Map<String, MessageLimit> messageLimits = new HashMap<>();
+  private final ArrayDeque<Call> queue = new ArrayDeque<>(); // guarded by this
+
+  private long targetLatencyNanos; // 0 for a fixed limit
+  private int limit;
+  private int active;
+  private long rejected;
+  private double averageLatencyNanos;
+  private int sinceAdjusted;
+
+  /**
+   * @param maxConcurrent the most calls to respond to at once
+   * @param maxQueued     the most calls to wait for others to complete
+   */
+  public AdmissionControl(int maxConcurrent, int maxQueued) {
+    if (maxConcurrent < 1 || maxQueued < 0) {
+      throw new IllegalArgumentException("Bad limits: " + maxConcurrent + ", " + maxQueued);
+    }
+    this.maxConcurrent = maxConcurrent;
+    this.maxQueued = maxQueued;
+    this.limit = maxConcurrent;
+  }
+
+  /** Limits the calls of a message to respond to at once. */
+  public synchronized void setMessageLimit(String messageName, int maxConcurrent) {
+    if (maxConcurrent < 1) {
+      throw new IllegalArgumentException("Bad limit: " + maxConcurrent);
+    }
+    messageLimits.computeIfAbsent(messageName, m -> new MessageLimit()).max = maxConcurrent;
+  }
+
+  /**
+   * Adapts the overall limit to keep the average latency of calls below a target,
+   * or fixes it at the maximum if the target is 0.
+   */
+  public synchronized void setTargetLatency(long latency, TimeUnit unit) {
+    this.targetLatencyNanos = unit.toNanos(latency);
+    if (targetLatencyNanos == 0) {
+      limit = maxConcurrent;
+    }
+  }
+
+  /** Returns the current overall limit. */
+  public synchronized int getLimit() {
+    return limit;
+  }
+
+  /** Returns the number of calls being responded to. */
+  public synchronized int getActive() {
+    return active;
+  }
+
+  /** Returns the number of calls waiting. */
+  public synchronized int getQueued() {
+    return queue.size();
+  }
+
+  /** Returns the number of calls rejected so far. */
+  public synchronized long getRejected() {
+    return rejected;
+  }
+
+  /**
+   * Runs a call on an executor once admitted, or runs {@code reject} if it can't
+   * be queued. A call without {@code reject} is queued regardless of the bound.
+   */
+  void execute(String messageName, Runnable call, Executor executor, Runnable reject) {
+    Call c = new Call(messageName, call, executor);
+    synchronized (this) {
+      if (!admit(c)) {
+        if (queue.size() < maxQueued || reject == null) {
+          queue.add(c);
+          return;
+        }
+        rejected++;
+        c = null;
+      }
+    }
+    if (c == null) {
+      reject.run();
+    } else {
+      c.start();
+    }
+  }
+
+  /** Take a permit for a call if within limits. Must hold the lock. */
+  private boolean admit(Call c) {
+    if (active >= limit) {
+      return false;
+    }
+    MessageLimit messageLimit = c.messageName == null ? null : messageLimits.get(c.messageName);
+    if (messageLimit != null) {
+      if (messageLimit.active >= messageLimit.max) {
+        return false;
+      }
+      messageLimit.active++;
+    }
+    active++;
+    return true;
+  }
+
+  private void finish(Call c, long latencyNanos) {
+    List<Call> admitted = new ArrayList<>();
+    synchronized (this) {
+      active--;
+      MessageLimit messageLimit = c.messageName == null ? null : messageLimits.get(c.messageName);
+      if (messageLimit != null) {
+        messageLimit.active--;
+      }
+      if (targetLatencyNanos > 0 && latencyNanos >= 0) {
+        adapt(latencyNanos);
+      }
+      // admit waiting calls in order, skipping those of messages at their limit
+      for (Iterator<Call> i = queue.iterator(); i.hasNext() && active < limit;) {
+        Call waiting = i.next();
+        if (admit(waiting)) {
+          i.remove();
+          admitted.add(waiting);
+        }
+      }
+    }
+    for (Call waiting : admitted) {
+      waiting.start();
+    }
+  }
+
+  /** Adjust the limit once per limit calls. Must hold the lock. */
+  private void adapt(long latencyNanos) {
+    averageLatencyNanos = averageLatencyNanos == 0 ? latencyNanos
+        : averageLatencyNanos + SMOOTHING * (latencyNanos - averageLatencyNanos);
+    if (++sinceAdjusted < limit) {
+      return;
+    }
+    sinceAdjusted = 0;
+    if (averageLatencyNanos > targetLatencyNanos) {
+      limit = Math.max(1, (int) (limit * DECREASE));
+    } else if (!queue.isEmpty() && limit < maxConcurrent) {
+      limit++;
+    }
+  }
+
+  private class Call implements Runnable {
+    private final String messageName;
+    private final Runnable call;
+    private final Executor executor;
+
+    Call(String messageName, Runnable call, Executor executor) {
+      this.messageName = messageName;
+      this.call = call;
+      this.executor = executor;
+    }
+
+    void start() {
+      try {
+        executor.execute(this);
+      } catch (RejectedExecutionException e) { // shutting down
+        finish(this, -1);
+      }
+    }
+
+    @Override
+    public void run() {
+      long start = System.nanoTime();
+      try {
+        call.run();
+      } finally {
+        finish(this, System.nanoTime() - start);
+      }
+    }
+  }
+
+  private static class MessageLimit {
+    private int max;
+    private int active;
+  }
+
+  /**
+   * Returns the name of the message called by a request, without consuming the
+   * buffers, or null if it can't be read.
+   */
+  static String getMessageName(List<ByteBuffer> request, boolean handshake) {
+    List<ByteBuffer> buffers = new ArrayList<>(request.size());
+    for (ByteBuffer buffer : request) {
+      buffers.add(buffer.duplicate());
+    }
+    BinaryDecoder in = DecoderFactory.get().directBinaryDecoder(new ByteBufferInputStream(buffers), null);
+    try {
+      if (handshake) {
+        HANDSHAKE_READER.read(null, in);
+      }
+      for (long n = in.readMapStart(); n != 0; n = in.mapNext()) { // skip metadata
+        for (long i = 0; i < n; i++) {
+          in.skipString();
+          in.skipBytes();
+        }
+      }
+      return in.readString();
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns a response to a connected client reporting a system error, as
+   * {@link org.apache.avro.ipc.Responder} does.
+   */
+  static List<ByteBuffer> systemError(String error) {
+    ByteBufferOutputStream bbo = new ByteBufferOutputStream();
+    BinaryEncoder out = EncoderFactory.get().directBinaryEncoder(bbo, null);
+    try {
+      out.writeMapStart(); // no metadata
+      out.setItemCount(0);
+      out.writeMapEnd();
+      out.writeBoolean(true); // an error
+      out.writeIndex(0); // the string branch of the system errors
+      out.writeString(error);
+    } catch (IOException e) { // can't happen writing to memory
+      throw new AvroRuntimeException(e);
+    }
+    return bbo.getBufferList();
+  }
+}
@@ -23,15 +23,19 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
+import org.apache.avro.Protocol.Message;
 import org.apache.avro.ipc.Responder;
 import org.apache.avro.ipc.Server;
 import org.apache.avro.ipc.netty.NettyTransportCodec.NettyDataPack;
 import org.apache.avro.ipc.netty.NettyTransportCodec.NettyFrameDecoder;
 import org.apache.avro.ipc.netty.NettyTransportCodec.NettyFrameEncoder;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
@@ -58,6 +62,7 @@ public class NettyServer implements Server {
   private final EventLoopGroup bossGroup;
   private final EventLoopGroup workerGroup;
   private final EventLoopGroup callerGroup;
+  private final AdmissionControl admission;
   private final CountDownLatch closed = new CountDownLatch(1);
   private final AtomicInteger activeCount = new AtomicInteger(0);
 
@@ -78,6 +83,18 @@ public class NettyServer implements Server {
   public NettyServer(Responder responder, InetSocketAddress addr, final Consumer<SocketChannel> initializer,
       final Consumer<ServerBootstrap> bootStrapInitialzier, EventLoopGroup bossGroup, EventLoopGroup workerGroup,
       EventLoopGroup callerGroup) throws InterruptedException {
+    this(responder, addr, initializer, bootStrapInitialzier, bossGroup, workerGroup, callerGroup, null);
+  }
+
+  /**
+   * @param admission limits the calls responded to concurrently, or null for no
+   *                  limits
+   * @see AdmissionControl
+   */
+  public NettyServer(Responder responder, InetSocketAddress addr, final Consumer<SocketChannel> initializer,
+      final Consumer<ServerBootstrap> bootStrapInitialzier, EventLoopGroup bossGroup, EventLoopGroup workerGroup,
+      EventLoopGroup callerGroup, AdmissionControl admission) throws InterruptedException {
+    this.admission = admission;
     this.bossGroup = bossGroup == null ? new NioEventLoopGroup(1) : bossGroup;
     this.workerGroup = workerGroup == null ? new NioEventLoopGroup(10) : workerGroup;
     this.callerGroup = callerGroup == null ? new DefaultEventLoopGroup(16) : callerGroup;
@@ -89,11 +106,12 @@ public class NettyServer implements Server {
             if (initializer != null) {
               initializer.accept(ch);
             }
-            ch.pipeline().addLast("frameDecoder", new NettyFrameDecoder())
+            ch.pipeline().addLast("frameDecoder", new NettyFrameDecoder(true))
                 .addLast("frameEncoder", new NettyFrameEncoder()).addLast("handler", new NettyServerAvroHandler());
           }
         }).option(ChannelOption.SO_BACKLOG, 1024).childOption(ChannelOption.TCP_NODELAY, true)
-        .childOption(ChannelOption.SO_KEEPALIVE, true);
+        .childOption(ChannelOption.SO_KEEPALIVE, true)
+        .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
 
     if (bootStrapInitialzier != null) {
       bootStrapInitialzier.accept(bootstrap);
@@ -152,12 +170,17 @@ public class NettyServer implements Server {
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, final NettyDataPack dataPack) throws Exception {
-      callerGroup.submit(new Runnable() {
+      Runnable call = new Runnable() {
         @Override
         public void run() {
           List<ByteBuffer> req = dataPack.getDatas();
           try {
-            List<ByteBuffer> res = responder.respond(req, connectionMetadata);
+            List<ByteBuffer> res;
+            try {
+              res = responder.respond(req, connectionMetadata);
+            } finally {
+              dataPack.release(); // the request has been read
+            }
             // response will be null for oneway messages.
             if (res != null) {
               dataPack.setDatas(res);
@@ -167,7 +190,38 @@ public class NettyServer implements Server {
             LOG.warn("unexpected error");
           }
         }
-      });
+      };
+      if (admission == null) {
+        try {
+          callerGroup.submit(call);
+        } catch (RejectedExecutionException e) { // shutting down
+          dataPack.release();
+        }
+        return;
+      }
+      boolean handshake = !connectionMetadata.isConnected();
+      String messageName = AdmissionControl.getMessageName(dataPack.getDatas(), handshake);
+      Executor caller = task -> {
+        try {
+          callerGroup.execute(task);
+        } catch (RejectedExecutionException e) { // shutting down
+          dataPack.release();
+          throw e;
+        }
+      };
+      admission.execute(messageName, call, caller, handshake ? null : () -> reject(ctx, dataPack, messageName));
+    }
+
+    /** Fail a call that was not admitted. */
+    private void reject(ChannelHandlerContext ctx, NettyDataPack dataPack, String messageName) {
+      dataPack.release();
+      Message message = messageName == null ? null : responder.getLocal().getMessages().get(messageName);
+      if (message != null && message.isOneWay()) {
+        return; // no response expected
+      }
+      dataPack
+          .setDatas(AdmissionControl.systemError("Server overloaded" + (message == null ? "" : ": " + messageName)));
+      ctx.channel().writeAndFlush(dataPack);
     }
 
     @Override
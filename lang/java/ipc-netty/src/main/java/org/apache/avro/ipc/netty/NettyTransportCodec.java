@@ -18,8 +18,6 @@
 
 package org.apache.avro.ipc.netty;
 
-import static io.netty.buffer.Unpooled.wrappedBuffer;
-
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -41,6 +39,7 @@ public class NettyTransportCodec {
   public static class NettyDataPack {
     private int serial; // to track each call in client side
     private List<ByteBuffer> datas;
+    private List<ByteBuf> frames; // pooled buffers backing datas, if retained
 
     public NettyDataPack() {
     }
@@ -66,6 +65,20 @@ public class NettyTransportCodec {
       return datas;
     }
 
+    /**
+     * Release the pooled buffers backing the data of a pack read by a
+     * {@link NettyFrameDecoder} that retains frames. The data must not be used
+     * afterwards. Does nothing for other packs.
+     */
+    public void release() {
+      if (frames != null) {
+        for (ByteBuf frame : frames) {
+          frame.release();
+        }
+        frames = null;
+      }
+    }
+
   }
 
   /**
@@ -84,28 +97,23 @@ public class NettyTransportCodec {
     @Override
     protected void encode(ChannelHandlerContext ctx, NettyDataPack dataPack, List<Object> out) throws Exception {
       List<ByteBuffer> origs = dataPack.getDatas();
-      List<ByteBuffer> bbs = new ArrayList<>(origs.size() * 2 + 1);
-      bbs.add(getPackHeader(dataPack)); // prepend a pack header including serial number and list size
+      int length = 8; // pack header including serial number and list size
       for (ByteBuffer b : origs) {
-        bbs.add(getLengthHeader(b)); // for each buffer prepend length field
-        bbs.add(b);
+        length += 4 + b.remaining(); // for each buffer a length field
       }
-      out.add(wrappedBuffer(bbs.toArray(new ByteBuffer[0])));
-    }
-
-    private ByteBuffer getPackHeader(NettyDataPack dataPack) {
-      ByteBuffer header = ByteBuffer.allocate(8);
-      header.putInt(dataPack.getSerial());
-      header.putInt(dataPack.getDatas().size());
-      ((Buffer) header).flip();
-      return header;
-    }
-
-    private ByteBuffer getLengthHeader(ByteBuffer buf) {
-      ByteBuffer header = ByteBuffer.allocate(4);
-      header.putInt(buf.limit());
-      ((Buffer) header).flip();
-      return header;
+      ByteBuf frame = ctx.alloc().ioBuffer(length);
+      try {
+        frame.writeInt(dataPack.getSerial());
+        frame.writeInt(origs.size());
+        for (ByteBuffer b : origs) {
+          frame.writeInt(b.remaining());
+          frame.writeBytes(b.duplicate());
+        }
+      } catch (Throwable t) {
+        frame.release();
+        throw t;
+      }
+      out.add(frame);
     }
   }
 
@@ -120,7 +128,20 @@ public class NettyTransportCodec {
     private final long maxMem;
     private static final long SIZEOF_REF = 8L; // mem usage of 64-bit pointer
 
+    private final boolean retainFrames;
+
     public NettyFrameDecoder() {
+      this(false);
+    }
+
+    /**
+     * @param retainFrames if true, the data of decoded packs are views of retained
+     *                     slices of the pooled input buffers, which must be freed
+     *                     with {@link NettyDataPack#release()} once the data was
+     *                     read; otherwise the data is copied.
+     */
+    public NettyFrameDecoder(boolean retainFrames) {
+      this.retainFrames = retainFrames;
       maxMem = Runtime.getRuntime().maxMemory();
     }
 
@@ -161,6 +182,9 @@ public class NettyTransportCodec {
 
       this.listSize = listSize;
       dataPack = new NettyDataPack(serial, new ArrayList<>(listSize));
+      if (retainFrames) {
+        dataPack.frames = new ArrayList<>(listSize);
+      }
 
       return true;
     }
@@ -179,14 +203,27 @@ public class NettyTransportCodec {
         return false;
       }
 
-      ByteBuffer bb = ByteBuffer.allocate(length);
-      buffer.readBytes(bb);
-      ((Buffer) bb).flip();
-      dataPack.getDatas().add(bb);
+      if (retainFrames) {
+        ByteBuf frame = buffer.readRetainedSlice(length);
+        dataPack.frames.add(frame);
+        dataPack.getDatas().add(frame.nioBuffer());
+      } else {
+        ByteBuffer bb = ByteBuffer.allocate(length);
+        buffer.readBytes(bb);
+        ((Buffer) bb).flip();
+        dataPack.getDatas().add(bb);
+      }
 
       return dataPack.getDatas().size() == listSize;
     }
 
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+      if (packHeaderRead) { // release a partially read pack
+        dataPack.release();
+      }
+    }
+
   }
 
 }
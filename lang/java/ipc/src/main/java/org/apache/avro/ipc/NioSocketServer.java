@@ -0,0 +1,418 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.ipc;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.avro.Protocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A socket-based server that multiplexes connections over a few selector
+ * threads, instead of using a thread per connection. It uses the same wire
+ * protocol as {@link SocketServer} and {@link SocketTransceiver}: requests and
+ * responses are lists of length-prefixed buffers, terminated by a zero length.
+ * <p>
+ * Requests are passed to the {@link Responder} on a worker executor. A
+ * connection has at most one request in progress, and is not read from until
+ * its response was written, so responses are returned in request order.
+ */
+public class NioSocketServer implements Server {
+  private static final Logger LOG = LoggerFactory.getLogger(NioSocketServer.class);
+
+  private static final int DEFAULT_WORKERS = 16;
+
+  private final Responder responder;
+  private final ServerSocketChannel channel;
+  private final Executor workers;
+  private final ExecutorService ownWorkers; // created here, so shut down on close
+  private final IoLoop[] loops;
+  private final AtomicInteger nextLoop = new AtomicInteger();
+  private final CountDownLatch closed = new CountDownLatch(1);
+
+  public NioSocketServer(Responder responder, SocketAddress addr) throws IOException {
+    this(responder, addr, Runtime.getRuntime().availableProcessors(), null);
+  }
+
+  /**
+   * @param ioThreads the number of selector threads to read and write on
+   * @param workers   the executor to respond to requests on, or null to use a
+   *                  fixed pool of daemon threads that is shut down on close
+   */
+  public NioSocketServer(Responder responder, SocketAddress addr, int ioThreads, Executor workers) throws IOException {
+    if (ioThreads < 1) {
+      throw new IllegalArgumentException("At least one I/O thread is required: " + ioThreads);
+    }
+    this.responder = responder;
+    if (workers == null) {
+      AtomicInteger count = new AtomicInteger();
+      this.ownWorkers = Executors.newFixedThreadPool(DEFAULT_WORKERS, r -> {
+        Thread thread = new Thread(r, "NioSocketServer worker " + count.incrementAndGet() + " on " + addr);
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.workers = ownWorkers;
+    } else {
+      this.ownWorkers = null;
+      this.workers = workers;
+    }
+
+    this.channel = ServerSocketChannel.open();
+    channel.configureBlocking(false);
+    channel.socket().bind(addr);
+
+    this.loops = new IoLoop[ioThreads];
+    for (int i = 0; i < ioThreads; i++) {
+      loops[i] = new IoLoop("NioSocketServer I/O " + i + " on " + addr);
+    }
+    channel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+  }
+
+  @Override
+  public int getPort() {
+    return channel.socket().getLocalPort();
+  }
+
+  @Override
+  public void start() {
+    LOG.info("starting " + channel.socket().getInetAddress());
+    for (IoLoop loop : loops) {
+      loop.start();
+    }
+  }
+
+  @Override
+  public void close() {
+    LOG.info("stopping " + channel.socket().getInetAddress());
+    for (IoLoop loop : loops) {
+      loop.shutdown();
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+    }
+    if (ownWorkers != null) {
+      ownWorkers.shutdownNow();
+    }
+    closed.countDown();
+  }
+
+  @Override
+  public void join() throws InterruptedException {
+    closed.await();
+  }
+
+  /** A selector thread, serving some of the connections. */
+  private class IoLoop extends Thread {
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean closing;
+
+    IoLoop(String name) throws IOException {
+      super(name);
+      setDaemon(true);
+      this.selector = Selector.open();
+    }
+
+    /** Run a task on this thread, which owns the selection keys. */
+    void execute(Runnable task) {
+      tasks.add(task);
+      selector.wakeup();
+    }
+
+    void shutdown() {
+      closing = true;
+      selector.wakeup();
+      if (isAlive()) {
+        try {
+          join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      } else {
+        cleanup();
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!closing) {
+          selector.select();
+          Runnable task;
+          while ((task = tasks.poll()) != null) {
+            task.run();
+          }
+          Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+          while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (!key.isValid()) {
+              continue;
+            }
+            if (key.isAcceptable()) {
+              accept();
+              continue;
+            }
+            Connection connection = (Connection) key.attachment();
+            try {
+              if (key.isReadable()) {
+                connection.read();
+              }
+              if (key.isValid() && key.isWritable()) {
+                connection.write();
+              }
+            } catch (IOException e) {
+              LOG.debug("closing connection to " + connection.getRemoteName(), e);
+              connection.close();
+            }
+          }
+        }
+      } catch (IOException e) {
+        LOG.warn("unexpected error", e);
+      } finally {
+        cleanup();
+      }
+    }
+
+    private void accept() throws IOException {
+      SocketChannel client;
+      while ((client = channel.accept()) != null) {
+        client.configureBlocking(false);
+        client.socket().setTcpNoDelay(true);
+        IoLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+        Connection connection = new Connection(client, loop);
+        if (loop == this) {
+          connection.register();
+        } else {
+          loop.execute(connection::register);
+        }
+      }
+    }
+
+    private void cleanup() {
+      if (!selector.isOpen()) { // already cleaned up by run()
+        return;
+      }
+      for (SelectionKey key : selector.keys()) {
+        if (key.attachment() instanceof Connection) {
+          ((Connection) key.attachment()).close();
+        }
+      }
+      try {
+        selector.close();
+      } catch (IOException e) {
+      }
+    }
+  }
+
+  /**
+   * The state of a connection. Used as the {@link Transceiver} passed to the
+   * responder, to keep the handshake state of the connection.
+   */
+  private class Connection extends Transceiver {
+    private final SocketChannel channel;
+    private final IoLoop loop;
+    private final ByteBuffer header = ByteBuffer.allocate(4);
+    private SelectionKey key;
+    private ByteBuffer body;
+    private List<ByteBuffer> request = new ArrayList<>();
+    private ByteBuffer[] response;
+    private volatile Protocol remote;
+
+    Connection(SocketChannel channel, IoLoop loop) {
+      this.channel = channel;
+      this.loop = loop;
+    }
+
+    void register() {
+      try {
+        key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+      } catch (IOException e) {
+        close();
+      }
+    }
+
+    /** Read what's available of a request, and dispatch it once complete. */
+    void read() throws IOException {
+      while (true) {
+        if (body == null) {
+          if (channel.read(header) < 0) {
+            close();
+            return;
+          }
+          if (header.hasRemaining()) {
+            return;
+          }
+          ((Buffer) header).flip();
+          int length = header.getInt();
+          ((Buffer) header).clear();
+          if (length == 0) { // end of buffers
+            dispatch();
+            return;
+          }
+          if (length < 0) {
+            throw new IOException("Bad buffer length: " + length);
+          }
+          body = ByteBuffer.allocate(length);
+        }
+        if (channel.read(body) < 0) {
+          close();
+          return;
+        }
+        if (body.hasRemaining()) {
+          return;
+        }
+        ((Buffer) body).flip();
+        request.add(body);
+        body = null;
+      }
+    }
+
+    private void dispatch() {
+      List<ByteBuffer> buffers = request;
+      request = new ArrayList<>();
+      key.interestOps(0); // don't read the next request until this one is done
+      try {
+        workers.execute(() -> respond(buffers));
+      } catch (RejectedExecutionException e) { // closed
+        close();
+      }
+    }
+
+    /** Called by a worker thread. */
+    private void respond(List<ByteBuffer> buffers) {
+      try {
+        List<ByteBuffer> buffersOut = responder.respond(buffers, this);
+        ByteBuffer[] frame = buffersOut == null ? null : frame(buffersOut);
+        loop.execute(() -> send(frame));
+      } catch (Throwable e) { // else reads stay disabled, wedging the connection
+        LOG.warn("unexpected error", e);
+        loop.execute(this::close);
+      }
+    }
+
+    private void send(ByteBuffer[] frame) {
+      if (!key.isValid()) {
+        return;
+      }
+      if (frame == null) { // no response data
+        key.interestOps(SelectionKey.OP_READ);
+        return;
+      }
+      response = frame;
+      try {
+        write();
+      } catch (IOException e) {
+        LOG.debug("closing connection to " + getRemoteName(), e);
+        close();
+      }
+    }
+
+    void write() throws IOException {
+      channel.write(response);
+      if (response[response.length - 1].hasRemaining()) {
+        key.interestOps(SelectionKey.OP_WRITE);
+      } else {
+        response = null;
+        key.interestOps(SelectionKey.OP_READ);
+      }
+    }
+
+    private ByteBuffer[] frame(List<ByteBuffer> buffers) {
+      List<ByteBuffer> frame = new ArrayList<>(buffers.size() * 2 + 1);
+      for (ByteBuffer buffer : buffers) {
+        if (!buffer.hasRemaining()) {
+          continue;
+        }
+        frame.add(length(buffer.remaining())); // length-prefix
+        frame.add(buffer);
+      }
+      frame.add(length(0)); // null-terminate
+      return frame.toArray(new ByteBuffer[0]);
+    }
+
+    private ByteBuffer length(int length) {
+      ByteBuffer buffer = ByteBuffer.allocate(4);
+      buffer.putInt(length);
+      ((Buffer) buffer).flip();
+      return buffer;
+    }
+
+    @Override
+    public String getRemoteName() {
+      return String.valueOf(channel.socket().getRemoteSocketAddress());
+    }
+
+    @Override
+    public List<ByteBuffer> readBuffers() throws IOException {
+      throw new UnsupportedOperationException("Requests are read by the server's I/O threads");
+    }
+
+    @Override
+    public void writeBuffers(List<ByteBuffer> buffers) throws IOException {
+      throw new UnsupportedOperationException("Responses are written by the server's I/O threads");
+    }
+
+    @Override
+    public boolean isConnected() {
+      return remote != null;
+    }
+
+    @Override
+    public void setRemote(Protocol remote) {
+      this.remote = remote;
+    }
+
+    @Override
+    public Protocol getRemote() {
+      return remote;
+    }
+
+    @Override
+    public void close() {
+      if (key != null) {
+        key.cancel();
+      }
+      try {
+        channel.close();
+      } catch (IOException e) {
+      }
+    }
+  }
+}
@@ -0,0 +1,418 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.ipc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Protocol;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.util.ByteBufferInputStream;
+import org.apache.avro.util.ByteBufferOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Transceiver} that spreads calls over a pool of connections, to one
+ * or more server addresses, so that a single requestor isn't limited by one
+ * connection. Each call is sent over the healthy connection with the fewest
+ * calls in progress.
+ * <p>
+ * The pool performs the handshake itself on every connection it opens, so that
+ * requestors see a connected transceiver and send no handshakes. The remote
+ * protocol learned on the first connection is reused, so later connections
+ * complete their handshake without exchanging protocol texts. All servers must
+ * therefore implement the same protocol.
+ * <p>
+ * A connection that fails is marked unhealthy and is reopened by a periodic
+ * health check, which also pings the healthy ones. Calls are never retried,
+ * since they may not be idempotent.
+ */
+public class PooledTransceiver extends Transceiver {
+  private static final Logger LOG = LoggerFactory.getLogger(PooledTransceiver.class);
+
+  private static final long DEFAULT_HEALTH_CHECK_MILLIS = 5000;
+
+  private static final SpecificDatumWriter<HandshakeRequest> HANDSHAKE_WRITER = new SpecificDatumWriter<>(
+      HandshakeRequest.class);
+  private static final SpecificDatumReader<HandshakeResponse> HANDSHAKE_READER = new SpecificDatumReader<>(
+      HandshakeResponse.class);
+
+  /** Opens a connection to an address. */
+  public interface Factory {
+    Transceiver open(SocketAddress address) throws IOException;
+  }
+
+  private final Protocol local;
+  private final MD5 localHash;
+  private final Factory factory;
+  private final List<Member> members = new ArrayList<>();
+  private final AtomicInteger next = new AtomicInteger();
+  private final ScheduledExecutorService healthChecks;
+
+  private volatile Protocol remote;
+  private volatile MD5 remoteHash;
+
+  /**
+   * Create a pool of {@code connectionsPerAddress} connections to each of the
+   * {@code addresses}, opened by {@code factory}, with a health check every 5
+   * seconds.
+   */
+  public PooledTransceiver(Protocol local, List<? extends SocketAddress> addresses, int connectionsPerAddress,
+      Factory factory) throws IOException {
+    this(local, addresses, connectionsPerAddress, factory, DEFAULT_HEALTH_CHECK_MILLIS);
+  }
+
+  /**
+   * Create a pool of {@code connectionsPerAddress} connections to each of the
+   * {@code addresses}, opened by {@code factory}.
+   *
+   * @param healthCheckMillis the interval of health checks, or 0 for none
+   * @throws IOException if no connection could be opened
+   */
+  public PooledTransceiver(Protocol local, List<? extends SocketAddress> addresses, int connectionsPerAddress,
+      Factory factory, long healthCheckMillis) throws IOException {
+    if (addresses.isEmpty() || connectionsPerAddress < 1) {
+      throw new IllegalArgumentException("No connections to pool");
+    }
+    this.local = local;
+    this.localHash = ProtocolCache.hash(local);
+    this.factory = factory;
+    for (SocketAddress address : addresses) {
+      for (int i = 0; i < connectionsPerAddress; i++) {
+        members.add(new Member(address));
+      }
+    }
+
+    IOException failure = null;
+    for (Member member : members) {
+      try {
+        member.open();
+      } catch (IOException e) {
+        LOG.warn("Failed to connect to " + member.address, e);
+        failure = e;
+      }
+    }
+    if (remote == null) {
+      close();
+      throw new IOException("Failed to connect to any of " + addresses, failure);
+    }
+
+    if (healthCheckMillis > 0) {
+      this.healthChecks = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "PooledTransceiver health check");
+        thread.setDaemon(true);
+        return thread;
+      });
+      healthChecks.scheduleWithFixedDelay(this::checkHealth, healthCheckMillis, healthCheckMillis,
+          TimeUnit.MILLISECONDS);
+    } else {
+      this.healthChecks = null;
+    }
+  }
+
+  /** Returns the number of connections that are currently healthy. */
+  public int getHealthyConnections() {
+    int count = 0;
+    for (Member member : members) {
+      if (member.healthy) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public String getRemoteName() {
+    return "pool of " + members.size() + " connections";
+  }
+
+  /** Choose the healthy connection with the fewest calls in progress. */
+  private Member choose() throws IOException {
+    int size = members.size();
+    int start = Math.floorMod(next.getAndIncrement(), size); // spread ties
+    Member best = null;
+    for (int i = 0; i < size; i++) {
+      Member member = members.get((start + i) % size);
+      if (member.healthy && (best == null || member.outstanding.get() < best.outstanding.get())) {
+        best = member;
+      }
+    }
+    if (best == null) {
+      throw new IOException("No healthy connections");
+    }
+    return best;
+  }
+
+  @Override
+  public List<ByteBuffer> transceive(List<ByteBuffer> request) throws IOException {
+    CallFuture<List<ByteBuffer>> future = new CallFuture<>();
+    transceive(request, future);
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for a response");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new AvroRuntimeException(e.getCause());
+    }
+  }
+
+  @Override
+  public void transceive(List<ByteBuffer> request, Callback<List<ByteBuffer>> callback) throws IOException {
+    while (true) {
+      Member member = choose();
+      Transceiver transceiver = member.transceiver;
+      if (transceiver == null) {
+        continue; // closed by a health check since chosen, so now unhealthy
+      }
+      member.outstanding.incrementAndGet();
+      try {
+        transceiver.transceive(request, new Callback<List<ByteBuffer>>() {
+          @Override
+          public void handleResult(List<ByteBuffer> result) {
+            member.outstanding.decrementAndGet();
+            callback.handleResult(result);
+          }
+
+          @Override
+          public void handleError(Throwable error) {
+            member.outstanding.decrementAndGet();
+            if (error instanceof IOException) {
+              member.fail(error);
+            }
+            callback.handleError(error);
+          }
+        });
+      } catch (IOException | RuntimeException e) {
+        member.outstanding.decrementAndGet();
+        member.fail(e);
+        throw e;
+      }
+      return;
+    }
+  }
+
+  @Override
+  public List<ByteBuffer> readBuffers() throws IOException {
+    throw new UnsupportedOperationException("Responses are read by the pooled connections");
+  }
+
+  @Override
+  public void writeBuffers(List<ByteBuffer> buffers) throws IOException {
+    while (true) {
+      Member member = choose();
+      Transceiver transceiver = member.transceiver;
+      if (transceiver == null) {
+        continue; // closed by a health check since chosen, so now unhealthy
+      }
+      try {
+        transceiver.writeBuffers(buffers);
+      } catch (IOException | RuntimeException e) {
+        member.fail(e);
+        throw e;
+      }
+      return;
+    }
+  }
+
+  /** Does nothing, as each pooled connection serializes its own writes. */
+  @Override
+  public void lockChannel() {
+  }
+
+  /** Does nothing, as each pooled connection serializes its own writes. */
+  @Override
+  public void unlockChannel() {
+  }
+
+  @Override
+  public boolean isConnected() {
+    return remote != null;
+  }
+
+  @Override
+  public void setRemote(Protocol remote) {
+    // the remote is set by the handshakes of the pooled connections
+  }
+
+  @Override
+  public Protocol getRemote() {
+    if (remote == null) {
+      throw new IllegalStateException("Not connected.");
+    }
+    return remote;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (healthChecks != null) {
+      healthChecks.shutdownNow();
+    }
+    for (Member member : members) {
+      member.close();
+    }
+  }
+
+  private void checkHealth() {
+    for (Member member : members) {
+      try {
+        if (member.healthy) {
+          member.ping();
+        } else {
+          member.open();
+          LOG.info("Reconnected to " + member.address);
+        }
+      } catch (IOException | RuntimeException e) {
+        member.fail(e);
+      }
+    }
+  }
+
+  /** Write a handshake-only request, optionally preceded by a handshake. */
+  private List<ByteBuffer> handshakeRequest(boolean sendLocalText, boolean withHandshake) throws IOException {
+    ByteBufferOutputStream bbo = new ByteBufferOutputStream();
+    BinaryEncoder out = EncoderFactory.get().directBinaryEncoder(bbo, null);
+    if (withHandshake) {
+      MD5 serverHash = remoteHash;
+      HandshakeRequest handshake = new HandshakeRequest();
+      handshake.setClientHash(localHash);
+      handshake.setServerHash(serverHash != null ? serverHash : localHash); // guess remote is local
+      if (sendLocalText) {
+        handshake.setClientProtocol(local.toString());
+      }
+      HANDSHAKE_WRITER.write(handshake, out);
+    }
+    out.writeInt(0); // empty metadata
+    out.writeString(""); // bogus message name
+    return bbo.getBufferList();
+  }
+
+  /** Perform the handshake over a new connection, returning the remote. */
+  private Protocol handshake(Transceiver transceiver) throws IOException {
+    boolean sendLocalText = false;
+    while (true) {
+      List<ByteBuffer> response = transceiver.transceive(handshakeRequest(sendLocalText, true));
+      HandshakeResponse handshake = HANDSHAKE_READER.read(null,
+          DecoderFactory.get().binaryDecoder(new ByteBufferInputStream(response), null));
+      switch (handshake.getMatch()) {
+      case BOTH:
+        Protocol known = remote;
+        return known != null ? known : local;
+      case CLIENT:
+        return setRemote(handshake);
+      case NONE:
+        if (sendLocalText) {
+          throw new IOException("Handshake failed with " + transceiver.getRemoteName());
+        }
+        setRemote(handshake);
+        sendLocalText = true;
+        break;
+      default:
+        throw new AvroRuntimeException("Unexpected match: " + handshake.getMatch());
+      }
+    }
+  }
+
+  private synchronized Protocol setRemote(HandshakeResponse handshake) {
+    MD5 hash = handshake.getServerHash();
+    if (remote == null || !hash.equals(remoteHash)) {
+      remote = ProtocolCache.parse(hash, handshake.getServerProtocol());
+      remoteHash = hash;
+    }
+    return remote;
+  }
+
+  /** A pooled connection. */
+  private class Member {
+    private final SocketAddress address;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile Transceiver transceiver;
+    private volatile boolean healthy;
+
+    Member(SocketAddress address) {
+      this.address = address;
+    }
+
+    void open() throws IOException {
+      close();
+      Transceiver opened = factory.open(address);
+      try {
+        Protocol protocol = handshake(opened);
+        opened.setRemote(protocol);
+        synchronized (PooledTransceiver.this) {
+          if (remote == null) {
+            remote = protocol;
+            remoteHash = ProtocolCache.hash(protocol);
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        opened.close();
+        throw e;
+      }
+      transceiver = opened;
+      healthy = true;
+    }
+
+    void ping() throws IOException {
+      Transceiver pinged = transceiver;
+      if (pinged == null) {
+        throw new IOException("Connection to " + address + " closed");
+      }
+      pinged.transceive(handshakeRequest(false, false));
+    }
+
+    void fail(Throwable error) {
+      if (healthy) {
+        LOG.warn("Connection to " + address + " failed", error);
+        healthy = false;
+      }
+    }
+
+    void close() {
+      healthy = false;
+      Transceiver closing = transceiver;
+      transceiver = null;
+      if (closing != null) {
+        try {
+          closing.close();
+        } catch (IOException e) {
+          LOG.debug("Failed to close connection to " + address, e);
+        }
+      }
+    }
+  }
+}
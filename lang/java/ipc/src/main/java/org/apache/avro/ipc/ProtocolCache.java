@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.ipc;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.avro.Protocol;
+
+/**
+ * A process-wide cache of the protocols exchanged in handshakes, keyed by their
+ * MD5, shared by all requestors and responders. Each protocol text is parsed at
+ * most once, however many connections send it, and all connections share the
+ * same parsed instance, so that datum readers, which cache their resolvers by
+ * schema identity, also resolve each pair of schemas once.
+ */
+final class ProtocolCache {
+  private static final ConcurrentMap<MD5, Protocol> PROTOCOLS = new ConcurrentHashMap<>();
+
+  private ProtocolCache() {
+  }
+
+  /** Returns the MD5 of a protocol, as sent in handshakes. */
+  static MD5 hash(Protocol protocol) {
+    return new MD5(protocol.getMD5());
+  }
+
+  /** Returns the cached protocol with a hash, or null if none is cached. */
+  static Protocol get(MD5 hash) {
+    return PROTOCOLS.get(hash);
+  }
+
+  /**
+   * Returns the cached protocol with a hash, parsing its text if none is cached.
+   * A parsed protocol is only cached if the hash sent with it is correct, so that
+   * a peer can't replace the protocol others see for a hash.
+   */
+  static Protocol parse(MD5 hash, CharSequence text) {
+    Protocol protocol = PROTOCOLS.get(hash);
+    if (protocol != null) {
+      return protocol;
+    }
+    protocol = Protocol.parse(text.toString());
+    if (!hash.equals(hash(protocol))) {
+      return protocol;
+    }
+    Protocol cached = PROTOCOLS.putIfAbsent(hash, protocol);
+    return cached != null ? cached : protocol;
+  }
+}
@@ -18,8 +18,12 @@
 
 package org.apache.avro.ipc;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -45,6 +49,7 @@ import org.apache.avro.specific.SpecificDatumReader;
 import org.apache.avro.specific.SpecificDatumWriter;
 import org.apache.avro.util.ByteBufferInputStream;
 import org.apache.avro.util.ByteBufferOutputStream;
+import org.apache.avro.util.Utf8;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -114,6 +119,108 @@ public abstract class Requestor {
     }
   }
 
+  /**
+   * Writes many requests for a two-way message in a single frame, and reads their
+   * responses or errors from a single frame, so that framing and round trips are
+   * amortized over the batch. The server must support batches, as
+   * {@link Responder} does since they were added. Older servers ignore the batch
+   * metadata and run only the first request, after which this throws its error,
+   * if it failed, or reports that batches aren't supported.
+   *
+   * @param messageName the name of the message to invoke.
+   * @param requests    the request data to send.
+   * @return a completed future for each request, in order, holding its response
+   *         or error.
+   */
+  public List<CallFuture<Object>> requestBatch(String messageName, List<?> requests) throws Exception {
+    Request rpcRequest = new Request(messageName, requests, new RPCContext(), null, true);
+    if (rpcRequest.getMessage().isOneWay())
+      throw new AvroRuntimeException("Not a two-way message: " + messageName);
+    CallFuture<List<CallFuture<Object>>> future = new CallFuture<>();
+    request(rpcRequest, future);
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable error = e.getCause();
+      if (error instanceof Exception) {
+        throw (Exception) error;
+      } else {
+        throw new AvroRuntimeException(error);
+      }
+    }
+  }
+
+  /**
+   * Calls a two-way message that returns an array, and returns the items of the
+   * array as they arrive. With a transceiver that
+   * {@link Transceiver#supportsStreaming() supports streaming} and a server that
+   * sends the items as they're written, such as {@link SocketServer} or
+   * {@link SaslSocketServer}, the first items can be read before the server has
+   * written the last ones, and the whole array is never held in memory. Other
+   * transports receive the items in one frame.
+   * <p>
+   * A streaming transceiver is locked by the calling thread until the stream is
+   * read to its end or closed, so the stream must be consumed and closed by this
+   * thread, and other calls over the transceiver wait for it.
+   *
+   * @param <T>         the type of the items of the array.
+   * @param messageName the name of the message to invoke.
+   * @param request     the request data to send.
+   * @return the items of the response, to be closed once read.
+   * @throws Exception if the call fails before any item is returned.
+   */
+  public <T> ResponseStream<T> requestStream(String messageName, Object request) throws Exception {
+    Transceiver t = getTransceiver();
+    boolean framed = t.supportsStreaming();
+    RPCContext context = new RPCContext();
+    context.requestCallMeta().put(STREAM_META, ByteBuffer.wrap(new byte[] { (byte) (framed ? 1 : 0) }));
+    Request rpcRequest = new Request(messageName, request, context);
+    Message lm = rpcRequest.getMessage();
+    if (lm.isOneWay() || lm.getResponse().getType() != Schema.Type.ARRAY)
+      throw new AvroRuntimeException("Not a message returning an array: " + messageName);
+
+    boolean locked = framed;
+    if (locked)
+      t.lockChannel();
+    try {
+      BinaryDecoder in;
+      while (true) {
+        List<ByteBuffer> response;
+        if (framed) {
+          t.writeBuffers(rpcRequest.getBytes());
+          response = t.readBuffers();
+        } else {
+          response = t.transceive(rpcRequest.getBytes());
+        }
+        in = DecoderFactory.get().binaryDecoder(new ByteBufferInputStream(response), null);
+        if (readHandshake(in))
+          break;
+        rpcRequest = new Request(rpcRequest); // resend the handshake
+      }
+
+      Message rm = remote.getMessages().get(messageName);
+      if (rm == null)
+        throw new AvroRuntimeException("Not a remote message: " + messageName);
+      context.setResponseCallMeta(META_READER.read(null, in));
+      if (in.readBoolean()) { // failed before any item was sent
+        Exception error = readError(rm.getErrors(), lm.getErrors(), in);
+        context.setError(error);
+        for (RPCPlugin plugin : rpcMetaPlugins) {
+          plugin.clientReceiveResponse(context);
+        }
+        throw error;
+      }
+      for (RPCPlugin plugin : rpcMetaPlugins) {
+        plugin.clientReceiveResponse(context);
+      }
+      locked = false; // now unlocked by the stream
+      return new ResponseStream<>(framed, in, lm, rm);
+    } finally {
+      if (locked)
+        t.unlockChannel();
+    }
+  }
+
   /**
    * Writes a request message and returns the result through a Callback. Clients
    * can also use a Future interface by creating a new CallFuture<T>, passing it
@@ -196,7 +303,21 @@ public abstract class Requestor {
 
   }
 
+  /** Call metadata holding the number of calls in a batch. */
+  static final String BATCH_META = "avro.batch";
+  /** The key of batch metadata read, as metadata keys are read as Utf8. */
+  static final Utf8 BATCH_META_READ = new Utf8(BATCH_META);
+  /**
+   * Call metadata requesting a streamed response, holding 1 if the client reads
+   * the response in frames, else 0.
+   */
+  static final String STREAM_META = "avro.stream";
+  static final Utf8 STREAM_META_READ = new Utf8(STREAM_META);
+
   private static final ConcurrentMap<String, MD5> REMOTE_HASHES = new ConcurrentHashMap<>();
+
+  // protocols servers sent, including those whose hash couldn't be verified and
+  // so aren't in ProtocolCache, e.g., from servers in other languages
   private static final ConcurrentMap<MD5, Protocol> REMOTE_PROTOCOLS = new ConcurrentHashMap<>();
 
   private static final SpecificDatumWriter<HandshakeRequest> HANDSHAKE_WRITER = new SpecificDatumWriter<>(
@@ -206,17 +327,21 @@ public abstract class Requestor {
       HandshakeResponse.class);
 
   private void writeHandshake(Encoder out) throws IOException {
-    if (getTransceiver().isConnected())
+    if (getTransceiver().isConnected()) {
+      if (remote == null) // connected by the transceiver, e.g. when pooled
+        remote = getTransceiver().getRemote();
       return;
+    }
     MD5 localHash = new MD5();
     localHash.bytes(local.getMD5());
     String remoteName = transceiver.getRemoteName();
     MD5 remoteHash = REMOTE_HASHES.get(remoteName);
-    if (remoteHash == null) { // guess remote is local
+    Protocol known = remoteHash == null ? null : REMOTE_PROTOCOLS.get(remoteHash);
+    if (known == null) { // guess remote is local
       remoteHash = localHash;
       remote = local;
     } else {
-      remote = REMOTE_PROTOCOLS.get(remoteHash);
+      remote = known;
     }
     HandshakeRequest handshake = new HandshakeRequest();
     handshake.setClientHash(localHash);
@@ -270,10 +395,10 @@ public abstract class Requestor {
   }
 
   private void setRemote(HandshakeResponse handshake) throws IOException {
-    remote = Protocol.parse(handshake.getServerProtocol().toString());
     MD5 remoteHash = handshake.getServerHash();
+    remote = ProtocolCache.parse(remoteHash, handshake.getServerProtocol());
+    REMOTE_PROTOCOLS.put(remoteHash, remote);
     REMOTE_HASHES.put(transceiver.getRemoteName(), remoteHash);
-    REMOTE_PROTOCOLS.putIfAbsent(remoteHash, remote);
   }
 
   /** Return the remote protocol. Force a handshake if required. */
@@ -384,6 +509,95 @@ public abstract class Requestor {
     }
   }
 
+  /**
+   * The items of a streamed response, read as they arrive. Errors while reading,
+   * including an error the server ends the stream with, are thrown as
+   * {@link AvroRuntimeException}s.
+   *
+   * @see Requestor#requestStream(String, Object)
+   */
+  public class ResponseStream<T> implements Iterator<T>, Closeable {
+    private final boolean framed;
+    private final Message lm;
+    private final Message rm;
+    private BinaryDecoder in;
+    private long remaining; // items left in the current block
+    private boolean done;
+
+    ResponseStream(boolean framed, BinaryDecoder in, Message lm, Message rm) {
+      this.framed = framed;
+      this.in = in;
+      this.lm = lm;
+      this.rm = rm;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (done)
+        return false;
+      if (remaining > 0)
+        return true;
+      try {
+        while (framed && in.isEnd()) { // read the next frame
+          List<ByteBuffer> frame = getTransceiver().readBuffers();
+          in = DecoderFactory.get().binaryDecoder(new ByteBufferInputStream(frame), in);
+        }
+        long count = in.readLong();
+        if (count > 0) {
+          remaining = count;
+          return true;
+        }
+        Exception error = count < 0 ? readError(rm.getErrors(), lm.getErrors(), in) : null;
+        finish();
+        if (error instanceof RuntimeException)
+          throw (RuntimeException) error;
+        if (error != null)
+          throw new AvroRuntimeException(error);
+        return false;
+      } catch (IOException e) {
+        finish();
+        throw new AvroRuntimeException(e);
+      }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      try {
+        T item = (T) readResponse(rm.getResponse().getElementType(), lm.getResponse().getElementType(), in);
+        remaining--;
+        return item;
+      } catch (IOException e) {
+        finish();
+        throw new AvroRuntimeException(e);
+      }
+    }
+
+    /** Reads and discards the items not read yet, then releases the transceiver. */
+    @Override
+    public void close() throws IOException {
+      try {
+        while (hasNext()) {
+          next();
+        }
+      } catch (AvroRuntimeException e) {
+        LOG.debug("Stream ended with an error", e);
+      } finally {
+        finish();
+      }
+    }
+
+    private void finish() {
+      if (!done) {
+        done = true;
+        if (framed)
+          getTransceiver().unlockChannel();
+      }
+    }
+  }
+
   /**
    * Encapsulates/generates a request.
    */
@@ -392,6 +606,7 @@ public abstract class Requestor {
     private final Object request;
     private final RPCContext context;
     private final BinaryEncoder encoder;
+    private final boolean batch;
     private Message message;
     private List<ByteBuffer> requestBytes;
 
@@ -415,10 +630,24 @@ public abstract class Requestor {
      * @param encoder     the BinaryEncoder to use to serialize the request.
      */
     public Request(String messageName, Object request, RPCContext context, BinaryEncoder encoder) {
+      this(messageName, request, context, encoder, false);
+    }
+
+    /**
+     * Creates a Request.
+     *
+     * @param messageName the name of the message to invoke.
+     * @param request     the request data to send, or a list of them if batch.
+     * @param context     the RPC context to use.
+     * @param encoder     the BinaryEncoder to use to serialize the request.
+     * @param batch       whether this is a batch of requests.
+     */
+    public Request(String messageName, Object request, RPCContext context, BinaryEncoder encoder, boolean batch) {
       this.messageName = messageName;
       this.request = request;
       this.context = context;
       this.encoder = ENCODER_FACTORY.binaryEncoder(new ByteBufferOutputStream(), encoder);
+      this.batch = batch;
     }
 
     /**
@@ -431,6 +660,7 @@ public abstract class Requestor {
       this.request = other.request;
       this.context = other.context;
       this.encoder = other.encoder;
+      this.batch = other.batch;
     }
 
     /**
@@ -481,7 +711,13 @@ public abstract class Requestor {
         Message m = getMessage();
         context.setMessage(m);
 
-        writeRequest(m.getRequest(), request, out); // write request payload
+        if (batch) {
+          for (Object r : (List<?>) request) {
+            writeRequest(m.getRequest(), r, out); // write request payloads
+          }
+        } else {
+          writeRequest(m.getRequest(), request, out); // write request payload
+        }
 
         out.flush();
         List<ByteBuffer> payload = bbo.getBufferList();
@@ -492,6 +728,10 @@ public abstract class Requestor {
         for (RPCPlugin plugin : rpcMetaPlugins) {
           plugin.clientSendRequest(context); // get meta-data from plugins
         }
+        if (batch) {
+          ByteBuffer size = ByteBuffer.allocate(4).putInt(0, ((List<?>) request).size());
+          context.requestCallMeta().put(BATCH_META, size);
+        }
         META_WRITER.write(context.requestCallMeta(), out);
 
         out.writeString(m.getName()); // write message name
@@ -554,6 +794,9 @@ public abstract class Requestor {
       RPCContext context = request.getContext();
       context.setResponseCallMeta(META_READER.read(null, in));
 
+      if (request.batch)
+        return getBatchResponse(lm, rm, context);
+
       if (!in.readBoolean()) { // no error
         Object response = readResponse(rm.getResponse(), lm.getResponse(), in);
         context.setResponse(response);
@@ -571,5 +814,36 @@ public abstract class Requestor {
         throw error;
       }
     }
+
+    /** Reads the response or error of each call in a batch. */
+    private List<CallFuture<Object>> getBatchResponse(Message lm, Message rm, RPCContext context) throws Exception {
+      ByteBuffer size = context.responseCallMeta().get(BATCH_META_READ);
+      if (size == null) { // the batch failed as a whole
+        if (!in.readBoolean())
+          throw new AvroRuntimeException("Batches not supported by " + getTransceiver().getRemoteName());
+        Exception error = readError(rm.getErrors(), lm.getErrors(), in);
+        context.setError(error);
+        for (RPCPlugin plugin : rpcMetaPlugins) {
+          plugin.clientReceiveResponse(context);
+        }
+        throw error;
+      }
+      int count = size.getInt(size.position());
+      List<CallFuture<Object>> responses = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        CallFuture<Object> response = new CallFuture<>();
+        if (!in.readBoolean()) { // no error
+          response.handleResult(readResponse(rm.getResponse(), lm.getResponse(), in));
+        } else {
+          response.handleError(readError(rm.getErrors(), lm.getErrors(), in));
+        }
+        responses.add(response);
+      }
+      context.setResponse(responses);
+      for (RPCPlugin plugin : rpcMetaPlugins) {
+        plugin.clientReceiveResponse(context);
+      }
+      return responses;
+    }
   }
 }
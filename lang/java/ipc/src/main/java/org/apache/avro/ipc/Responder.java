@@ -19,12 +19,16 @@
 package org.apache.avro.ipc;
 
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.nio.ByteBuffer;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +44,7 @@ import org.apache.avro.util.Utf8;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.Decoder;
 import org.apache.avro.io.Encoder;
@@ -57,6 +62,12 @@ public abstract class Responder {
 
   private static final ThreadLocal<Protocol> REMOTE = new ThreadLocal<>();
 
+  /** The most items of a streamed response written per block. */
+  private static final int STREAM_BLOCK_SIZE = 128;
+
+  private static final ThreadLocal<BinaryDecoder> DECODER = new ThreadLocal<>();
+  private static final ThreadLocal<BinaryEncoder> ENCODER = new ThreadLocal<>();
+
   private final Map<MD5, Protocol> protocols = new ConcurrentHashMap<>();
 
   private final Protocol local;
@@ -108,9 +119,24 @@ public abstract class Responder {
    * status of connection.
    */
   public List<ByteBuffer> respond(List<ByteBuffer> buffers, Transceiver connection) throws IOException {
-    Decoder in = DecoderFactory.get().binaryDecoder(new ByteBufferInputStream(buffers), null);
+    // borrow this thread's decoder and encoder, so that nested calls don't share
+    BinaryDecoder in = DECODER.get();
+    BinaryEncoder out = ENCODER.get();
+    DECODER.set(null);
+    ENCODER.set(null);
+    in = DecoderFactory.get().binaryDecoder(new ByteBufferInputStream(buffers), in);
     ByteBufferOutputStream bbo = new ByteBufferOutputStream();
-    BinaryEncoder out = EncoderFactory.get().binaryEncoder(bbo, null);
+    out = EncoderFactory.get().binaryEncoder(bbo, out);
+    try {
+      return respond(connection, in, out, bbo);
+    } finally {
+      DECODER.set(in);
+      ENCODER.set(out);
+    }
+  }
+
+  private List<ByteBuffer> respond(Transceiver connection, Decoder in, BinaryEncoder out, ByteBufferOutputStream bbo)
+      throws IOException {
     Exception error = null;
     RPCContext context = new RPCContext();
     List<ByteBuffer> payload = null;
@@ -135,48 +161,59 @@ public abstract class Responder {
       if (m == null)
         throw new AvroRuntimeException("No message named " + messageName + " in " + getLocal());
 
-      Object request = readRequest(rm.getRequest(), m.getRequest(), in);
+      ByteBuffer batch = context.requestCallMeta().get(Requestor.BATCH_META_READ);
+      if (batch != null) {
+        respondBatch(remote, rm, m, batch, in, out, context);
+      } else {
+        Object request = readRequest(rm.getRequest(), m.getRequest(), in);
 
-      context.setMessage(rm);
-      for (RPCPlugin plugin : rpcMetaPlugins) {
-        plugin.serverReceiveRequest(context);
-      }
+        context.setMessage(rm);
+        for (RPCPlugin plugin : rpcMetaPlugins) {
+          plugin.serverReceiveRequest(context);
+        }
 
-      // create response using local protocol specification
-      if ((m.isOneWay() != rm.isOneWay()) && wasConnected)
-        throw new AvroRuntimeException("Not both one-way: " + messageName);
+        // create response using local protocol specification
+        if ((m.isOneWay() != rm.isOneWay()) && wasConnected)
+          throw new AvroRuntimeException("Not both one-way: " + messageName);
 
-      Object response = null;
+        Object response = null;
 
-      try {
-        REMOTE.set(remote);
-        response = respond(m, request);
-        context.setResponse(response);
-      } catch (Exception e) {
-        error = e;
-        context.setError(error);
-        LOG.warn("user error", e);
-      } finally {
-        REMOTE.set(null);
-      }
+        try {
+          REMOTE.set(remote);
+          response = respond(m, request);
+          context.setResponse(response);
+        } catch (Exception e) {
+          error = e;
+          context.setError(error);
+          LOG.warn("user error", e);
+        } finally {
+          REMOTE.set(null);
+        }
 
-      if (m.isOneWay() && wasConnected) // no response data
-        return null;
+        if (m.isOneWay() && wasConnected) // no response data
+          return null;
 
-      out.writeBoolean(error != null);
-      if (error == null)
-        writeResponse(m.getResponse(), response, out);
-      else
-        try {
-          writeError(m.getErrors(), error, out);
-        } catch (UnresolvedUnionException e) { // unexpected error
-          throw error;
+        ByteBuffer stream = context.requestCallMeta().get(Requestor.STREAM_META_READ);
+        if (stream != null && error == null) {
+          boolean framed = stream.get(stream.position()) != 0;
+          return respondStream(connection, framed, m, response, handshake, context, out, bbo);
         }
+
+        out.writeBoolean(error != null);
+        if (error == null)
+          writeResponse(m.getResponse(), response, out);
+        else
+          try {
+            writeError(m.getErrors(), error, out);
+          } catch (UnresolvedUnionException e) { // unexpected error
+            throw error;
+          }
+      }
     } catch (Exception e) { // system error
       LOG.warn("system error", e);
       context.setError(e);
       bbo = new ByteBufferOutputStream();
-      out = EncoderFactory.get().binaryEncoder(bbo, null);
+      out = EncoderFactory.get().binaryEncoder(bbo, out);
       out.writeBoolean(true);
       writeError(Protocol.SYSTEM_ERRORS, new Utf8(e.toString()), out);
       if (null == handshake) {
@@ -200,6 +237,137 @@ public abstract class Responder {
     return bbo.getBufferList();
   }
 
+  /**
+   * Reads the requests of a batch, responds to each, and writes each response or
+   * error. A call that fails with an undeclared error reports it as a string,
+   * like a system error, without failing the rest of the batch.
+   */
+  private void respondBatch(Protocol remote, Message rm, Message m, ByteBuffer batch, Decoder in, Encoder out,
+      RPCContext context) throws Exception {
+    if (m.isOneWay() || rm.isOneWay())
+      throw new AvroRuntimeException("Not a two-way message: " + m.getName());
+    int count = batch.getInt(batch.position());
+    if (count < 0)
+      throw new AvroRuntimeException("Invalid batch size: " + count);
+    List<Object> requests = new ArrayList<>(); // not pre-sized, as count is the client's
+    for (int i = 0; i < count; i++) {
+      requests.add(readRequest(rm.getRequest(), m.getRequest(), in));
+    }
+
+    context.setMessage(rm);
+    for (RPCPlugin plugin : rpcMetaPlugins) {
+      plugin.serverReceiveRequest(context);
+    }
+
+    for (Object request : requests) {
+      Object response = null;
+      Exception error = null;
+      try {
+        REMOTE.set(remote);
+        response = respond(m, request);
+      } catch (Exception e) {
+        error = e;
+        LOG.warn("user error", e);
+      } finally {
+        REMOTE.set(null);
+      }
+
+      out.writeBoolean(error != null);
+      if (error == null)
+        writeResponse(m.getResponse(), response, out);
+      else
+        try {
+          writeError(m.getErrors(), error, out);
+        } catch (AvroRuntimeException e) { // undeclared error, not written
+          writeError(m.getErrors(), new Utf8(error.toString()), out);
+        }
+    }
+    context.responseCallMeta().put(Requestor.BATCH_META, batch.duplicate());
+  }
+
+  /**
+   * Writes the response to a streamed call: the items of the array returned, in
+   * blocks, ended by an empty block, or by an error if the items can't all be
+   * read. If the client reads frames and the connection can write them, each
+   * block is sent as soon as it's written, else all are returned in one frame.
+   * RPC plugins see the response before its items are written.
+   */
+  private List<ByteBuffer> respondStream(Transceiver connection, boolean framed, Message m, Object response,
+      List<ByteBuffer> handshake, RPCContext context, BinaryEncoder out, ByteBufferOutputStream bbo)
+      throws IOException {
+    Schema element = m.getResponse().getElementType(); // fails unless an array
+    for (RPCPlugin plugin : rpcMetaPlugins) {
+      plugin.serverSendResponse(context);
+    }
+    META_WRITER.write(context.responseCallMeta(), out);
+    out.writeBoolean(false); // no error
+    out.flush();
+    List<ByteBuffer> unsent = new ArrayList<>(handshake);
+    unsent.addAll(bbo.getBufferList());
+
+    Object[] block = new Object[STREAM_BLOCK_SIZE];
+    try {
+      Iterator<?> items = iterator(response);
+      while (items.hasNext()) {
+        int count = 0;
+        while (count < block.length && items.hasNext()) {
+          block[count++] = items.next();
+        }
+        out.writeLong(count);
+        for (int i = 0; i < count; i++) {
+          writeResponse(element, block[i], out);
+          block[i] = null;
+        }
+        out.flush();
+        unsent.addAll(bbo.getBufferList());
+        if (framed && connection != null) {
+          try {
+            connection.writeBuffers(unsent);
+            unsent = new ArrayList<>();
+          } catch (UnsupportedOperationException e) { // send all at the end
+            framed = false;
+          }
+        }
+      }
+      out.writeLong(0); // end of stream
+    } catch (Exception e) { // the response has started, so end it with the error
+      LOG.warn("user error", e);
+      out.writeLong(-1);
+      try {
+        writeError(m.getErrors(), e, out);
+      } catch (AvroRuntimeException u) { // undeclared error, not written
+        writeError(m.getErrors(), new Utf8(e.toString()), out);
+      }
+    }
+    out.flush();
+    unsent.addAll(bbo.getBufferList());
+    return unsent;
+  }
+
+  private static Iterator<?> iterator(Object array) {
+    if (array instanceof Iterator)
+      return (Iterator<?>) array;
+    if (array instanceof Iterable)
+      return ((Iterable<?>) array).iterator();
+    if (array == null || !array.getClass().isArray())
+      throw new AvroRuntimeException("Not an array: " + array);
+    return new Iterator<Object>() {
+      private int i = 0;
+
+      @Override
+      public boolean hasNext() {
+        return i < Array.getLength(array);
+      }
+
+      @Override
+      public Object next() {
+        if (!hasNext())
+          throw new NoSuchElementException();
+        return Array.get(array, i++);
+      }
+    };
+  }
+
   private SpecificDatumWriter<HandshakeResponse> handshakeWriter = new SpecificDatumWriter<>(HandshakeResponse.class);
   private SpecificDatumReader<HandshakeRequest> handshakeReader = new SpecificDatumReader<>(HandshakeRequest.class);
 
@@ -207,10 +375,13 @@ public abstract class Responder {
     if (connection != null && connection.isConnected())
       return connection.getRemote();
     HandshakeRequest request = handshakeReader.read(null, in);
-    Protocol remote = protocols.get(request.getClientHash());
-    if (remote == null && request.getClientProtocol() != null) {
-      remote = Protocol.parse(request.getClientProtocol().toString());
-      protocols.put(request.getClientHash(), remote);
+    MD5 clientHash = request.getClientHash();
+    Protocol remote = protocols.get(clientHash);
+    if (remote == null) { // maybe another responder has seen it
+      remote = request.getClientProtocol() != null ? ProtocolCache.parse(clientHash, request.getClientProtocol())
+          : ProtocolCache.get(clientHash);
+      if (remote != null)
+        protocols.put(clientHash, remote);
     }
     HandshakeResponse response = new HandshakeResponse();
     if (localHash.equals(request.getServerHash())) {
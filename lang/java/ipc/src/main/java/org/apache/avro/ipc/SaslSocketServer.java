@@ -23,6 +23,7 @@ import java.util.Map;
 import java.net.SocketAddress;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
 
 import javax.security.sasl.Sasl;
 import javax.security.sasl.SaslServer;
@@ -50,27 +51,51 @@ public class SaslSocketServer extends SocketServer {
    * (<a href="https://www.ietf.org/rfc/rfc2245.txt">RFC 2245) mechanism.
    */
   public SaslSocketServer(Responder responder, SocketAddress addr) throws IOException {
+    this(responder, addr, (ExecutorService) null);
+  }
+
+  /**
+   * Create using SASL's anonymous
+   * (<a href="https://www.ietf.org/rfc/rfc2245.txt">RFC 2245) mechanism, running
+   * connections on the given executor.
+   *
+   * @see SocketServer#newConnectionExecutor(int)
+   */
+  public SaslSocketServer(Responder responder, SocketAddress addr, ExecutorService executor) throws IOException {
     this(responder, addr, new SaslServerFactory() {
       @Override
       public SaslServer getServer() {
         return new AnonymousServer();
       }
-    });
+    }, executor);
   }
 
   /** Create using the specified {@link SaslServer} parameters. */
   public SaslSocketServer(Responder responder, SocketAddress addr, final String mechanism, final String protocol,
       final String serverName, final Map<String, ?> props, final CallbackHandler cbh) throws IOException {
+    this(responder, addr, mechanism, protocol, serverName, props, cbh, null);
+  }
+
+  /**
+   * Create using the specified {@link SaslServer} parameters, running connections
+   * on the given executor.
+   *
+   * @see SocketServer#newConnectionExecutor(int)
+   */
+  public SaslSocketServer(Responder responder, SocketAddress addr, final String mechanism, final String protocol,
+      final String serverName, final Map<String, ?> props, final CallbackHandler cbh, ExecutorService executor)
+      throws IOException {
     this(responder, addr, new SaslServerFactory() {
       @Override
       public SaslServer getServer() throws SaslException {
         return Sasl.createSaslServer(mechanism, protocol, serverName, props, cbh);
       }
-    });
+    }, executor);
   }
 
-  private SaslSocketServer(Responder responder, SocketAddress addr, SaslServerFactory factory) throws IOException {
-    super(responder, addr);
+  private SaslSocketServer(Responder responder, SocketAddress addr, SaslServerFactory factory, ExecutorService executor)
+      throws IOException {
+    super(responder, addr, executor);
     this.factory = factory;
   }
 
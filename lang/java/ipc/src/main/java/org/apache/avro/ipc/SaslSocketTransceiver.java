@@ -28,6 +28,7 @@ import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.security.sasl.Sasl;
 import javax.security.sasl.SaslException;
@@ -56,7 +57,10 @@ public class SaslSocketTransceiver extends Transceiver {
   private SaslParticipant sasl;
   private SocketChannel channel;
   private boolean dataIsWrapped;
-  private boolean saslResponsePiggybacked;
+  private volatile boolean saslResponsePiggybacked;
+  private final ReentrantLock readLock = new ReentrantLock();
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private TransceiverPipeline pipeline;
 
   private Protocol remote;
 
@@ -72,13 +76,35 @@ public class SaslSocketTransceiver extends Transceiver {
     this(address, new AnonymousClient());
   }
 
+  /**
+   * Create using SASL's anonymous mechanism, pipelining calls if
+   * {@code pipelined} is true.
+   *
+   * @see #SaslSocketTransceiver(SocketAddress, SaslClient, boolean)
+   */
+  public SaslSocketTransceiver(SocketAddress address, boolean pipelined) throws IOException {
+    this(address, new AnonymousClient(), pipelined);
+  }
+
   /** Create using the specified {@link SaslClient}. */
   public SaslSocketTransceiver(SocketAddress address, SaslClient saslClient) throws IOException {
+    this(address, saslClient, false);
+  }
+
+  /**
+   * Create using the specified {@link SaslClient}. If {@code pipelined} is true,
+   * many calls can be in progress over the connection, and their responses are
+   * read by another thread.
+   */
+  public SaslSocketTransceiver(SocketAddress address, SaslClient saslClient, boolean pipelined) throws IOException {
     this.sasl = new SaslParticipant(saslClient);
     this.channel = SocketChannel.open(address);
     this.channel.socket().setTcpNoDelay(true);
     LOG.debug("open to {}", getRemoteName());
     open(true);
+    if (pipelined) {
+      this.pipeline = new TransceiverPipeline(this);
+    }
   }
 
   /** Create using the specified {@link SaslServer}. */
@@ -110,21 +136,45 @@ public class SaslSocketTransceiver extends Transceiver {
   }
 
   @Override
-  public synchronized List<ByteBuffer> transceive(List<ByteBuffer> request) throws IOException {
-    if (saslResponsePiggybacked) { // still need to read response
-      saslResponsePiggybacked = false;
-      Status status = readStatus();
-      ByteBuffer frame = readFrame();
-      switch (status) {
-      case COMPLETE:
-        break;
-      case FAIL:
-        throw new SaslException("Fail: " + toString(frame));
-      default:
-        throw new IOException("Unexpected SASL status: " + status);
+  public List<ByteBuffer> transceive(List<ByteBuffer> request) throws IOException {
+    readPiggybackedResponse();
+    if (pipeline != null)
+      return pipeline.transceive(request);
+    return super.transceive(request);
+  }
+
+  @Override
+  public void transceive(List<ByteBuffer> request, Callback<List<ByteBuffer>> callback) throws IOException {
+    if (pipeline != null) {
+      readPiggybackedResponse();
+      pipeline.transceive(request, callback);
+    } else {
+      super.transceive(request, callback);
+    }
+  }
+
+  private void readPiggybackedResponse() throws IOException {
+    if (!saslResponsePiggybacked) {
+      return; // don't wait for a pipeline's reader
+    }
+    readLock.lock();
+    try {
+      if (saslResponsePiggybacked) { // still need to read response
+        saslResponsePiggybacked = false;
+        Status status = readStatus();
+        ByteBuffer frame = readFrame();
+        switch (status) {
+        case COMPLETE:
+          break;
+        case FAIL:
+          throw new SaslException("Fail: " + toString(frame));
+        default:
+          throw new IOException("Unexpected SASL status: " + status);
+        }
       }
+    } finally {
+      readLock.unlock();
     }
-    return super.transceive(request);
   }
 
   private void open(boolean isClient) throws IOException {
@@ -183,14 +233,26 @@ public class SaslSocketTransceiver extends Transceiver {
     return new String(buffer.array(), StandardCharsets.UTF_8);
   }
 
+  /** True unless pipelined, as a pipeline reads every response. */
+  @Override
+  public boolean supportsStreaming() {
+    return pipeline == null;
+  }
+
   @Override
-  public synchronized List<ByteBuffer> readBuffers() throws IOException {
-    List<ByteBuffer> buffers = new ArrayList<>();
-    while (true) {
-      ByteBuffer buffer = readFrameAndUnwrap();
-      if (((Buffer) buffer).remaining() == 0)
-        return buffers;
-      buffers.add(buffer);
+  public List<ByteBuffer> readBuffers() throws IOException {
+    readLock.lock();
+    try {
+      readPiggybackedResponse(); // in case the first call is streamed
+      List<ByteBuffer> buffers = new ArrayList<>();
+      while (true) {
+        ByteBuffer buffer = readFrameAndUnwrap();
+        if (((Buffer) buffer).remaining() == 0)
+          return buffers;
+        buffers.add(buffer);
+      }
+    } finally {
+      readLock.unlock();
     }
   }
 
@@ -229,9 +291,18 @@ public class SaslSocketTransceiver extends Transceiver {
   }
 
   @Override
-  public synchronized void writeBuffers(List<ByteBuffer> buffers) throws IOException {
+  public void writeBuffers(List<ByteBuffer> buffers) throws IOException {
     if (buffers == null)
       return; // no data to write
+    writeLock.lock();
+    try {
+      writeBuffersLocked(buffers);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private void writeBuffersLocked(List<ByteBuffer> buffers) throws IOException {
     List<ByteBuffer> writes = new ArrayList<>(buffers.size() * 2 + 1);
     int currentLength = 0;
     ByteBuffer currentHeader = writeHeader;
@@ -20,11 +20,19 @@ package org.apache.avro.ipc;
 
 import java.io.IOException;
 import java.io.EOFException;
+import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,15 +52,40 @@ import org.apache.avro.ipc.generic.GenericResponder;
 public class SocketServer extends Thread implements Server {
   private static final Logger LOG = LoggerFactory.getLogger(SocketServer.class);
 
+  private static final Method NEW_VIRTUAL_THREAD_EXECUTOR;
+  static {
+    Method method = null;
+    try {
+      method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      ((ExecutorService) method.invoke(null)).shutdown(); // fails if preview
+    } catch (ReflectiveOperationException | LinkageError e) {
+      method = null;
+    }
+    NEW_VIRTUAL_THREAD_EXECUTOR = method;
+  }
+
   private Responder responder;
   private ServerSocketChannel channel;
   private ThreadGroup group;
+  private ExecutorService executor;
 
   public SocketServer(Responder responder, SocketAddress addr) throws IOException {
+    this(responder, addr, null);
+  }
+
+  /**
+   * Create a server that runs each connection on the given executor, instead of a
+   * new thread per connection. The executor is shut down when the server is
+   * closed.
+   *
+   * @see #newConnectionExecutor(int)
+   */
+  public SocketServer(Responder responder, SocketAddress addr, ExecutorService executor) throws IOException {
     String name = "SocketServer on " + addr;
 
     this.responder = responder;
     this.group = new ThreadGroup(name);
+    this.executor = executor;
     this.channel = ServerSocketChannel.open();
 
     channel.socket().bind(addr);
@@ -61,6 +94,36 @@ public class SocketServer extends Thread implements Server {
     setDaemon(true);
   }
 
+  /**
+   * Returns an executor to run connections on: one that starts a virtual thread
+   * per connection when the JVM supports them, and otherwise a pool of at most
+   * {@code maxThreads} daemon threads, where connections beyond that are closed,
+   * as a connection holds its thread until it's closed.
+   */
+  public static ExecutorService newConnectionExecutor(int maxThreads) {
+    if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+      try {
+        return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+      } catch (ReflectiveOperationException e) {
+        LOG.warn("virtual threads unavailable", e);
+      }
+    }
+    AtomicInteger count = new AtomicInteger();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+        new SynchronousQueue<>(), r -> {
+          Thread thread = new Thread(r, "SocketServer connection " + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  /** Returns true if {@link #newConnectionExecutor(int)} uses virtual threads. */
+  public static boolean isVirtualThreadSupported() {
+    return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+  }
+
   @Override
   public int getPort() {
     return channel.socket().getLocalPort();
@@ -93,6 +156,9 @@ public class SocketServer extends Thread implements Server {
   public void close() {
     this.interrupt();
     group.interrupt();
+    if (executor != null) {
+      executor.shutdownNow();
+    }
   }
 
   /**
@@ -111,6 +177,17 @@ public class SocketServer extends Thread implements Server {
     public Connection(SocketChannel channel) throws IOException {
       this.channel = channel;
 
+      if (executor != null) {
+        try {
+          executor.execute(this);
+        } catch (RejectedExecutionException e) { // closed, or no thread free
+          if (!executor.isShutdown()) {
+            LOG.warn("no thread for connection from " + channel.socket().getRemoteSocketAddress());
+          }
+          channel.close();
+        }
+        return;
+      }
       Thread thread = new Thread(group, this);
       thread.setName("Connection to " + channel.socket().getRemoteSocketAddress());
       thread.setDaemon(true);
@@ -127,7 +204,11 @@ public class SocketServer extends Thread implements Server {
           }
         } catch (EOFException | ClosedChannelException e) {
         } finally {
-          xc.close();
+          if (xc != null) {
+            xc.close();
+          } else {
+            channel.close();
+          }
         }
       } catch (IOException e) {
         LOG.warn("unexpected error", e);
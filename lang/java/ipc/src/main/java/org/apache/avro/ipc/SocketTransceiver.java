@@ -26,6 +26,7 @@ import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +44,10 @@ public class SocketTransceiver extends Transceiver {
 
   private SocketChannel channel;
   private ByteBuffer header = ByteBuffer.allocate(4);
+  private ByteBuffer writeHeader = ByteBuffer.allocate(4);
+  private final ReentrantLock readLock = new ReentrantLock();
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private TransceiverPipeline pipeline;
 
   private Protocol remote;
 
@@ -50,6 +55,18 @@ public class SocketTransceiver extends Transceiver {
     this(SocketChannel.open(address));
   }
 
+  /**
+   * Create a client, that pipelines calls if {@code pipelined} is true: many
+   * calls can then be in progress over the connection, and their responses are
+   * read by another thread.
+   */
+  public SocketTransceiver(SocketAddress address, boolean pipelined) throws IOException {
+    this(SocketChannel.open(address));
+    if (pipelined) {
+      this.pipeline = new TransceiverPipeline(this);
+    }
+  }
+
   public SocketTransceiver(SocketChannel channel) throws IOException {
     this.channel = channel;
     this.channel.socket().setTcpNoDelay(true);
@@ -62,47 +79,78 @@ public class SocketTransceiver extends Transceiver {
   }
 
   @Override
-  public synchronized List<ByteBuffer> readBuffers() throws IOException {
-    List<ByteBuffer> buffers = new ArrayList<>();
-    while (true) {
-      ((Buffer) header).clear();
-      while (header.hasRemaining()) {
-        if (channel.read(header) < 0)
-          throw new ClosedChannelException();
-      }
-      ((Buffer) header).flip();
-      int length = header.getInt();
-      if (length == 0) { // end of buffers
-        return buffers;
-      }
-      ByteBuffer buffer = ByteBuffer.allocate(length);
-      while (buffer.hasRemaining()) {
-        if (channel.read(buffer) < 0)
-          throw new ClosedChannelException();
+  public List<ByteBuffer> transceive(List<ByteBuffer> request) throws IOException {
+    if (pipeline != null)
+      return pipeline.transceive(request);
+    return super.transceive(request);
+  }
+
+  @Override
+  public void transceive(List<ByteBuffer> request, Callback<List<ByteBuffer>> callback) throws IOException {
+    if (pipeline != null)
+      pipeline.transceive(request, callback);
+    else
+      super.transceive(request, callback);
+  }
+
+  /** True unless pipelined, as a pipeline reads every response. */
+  @Override
+  public boolean supportsStreaming() {
+    return pipeline == null;
+  }
+
+  @Override
+  public List<ByteBuffer> readBuffers() throws IOException {
+    readLock.lock();
+    try {
+      List<ByteBuffer> buffers = new ArrayList<>();
+      while (true) {
+        ((Buffer) header).clear();
+        while (header.hasRemaining()) {
+          if (channel.read(header) < 0)
+            throw new ClosedChannelException();
+        }
+        ((Buffer) header).flip();
+        int length = header.getInt();
+        if (length == 0) { // end of buffers
+          return buffers;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer) < 0)
+            throw new ClosedChannelException();
+        }
+        ((Buffer) buffer).flip();
+        buffers.add(buffer);
       }
-      ((Buffer) buffer).flip();
-      buffers.add(buffer);
+    } finally {
+      readLock.unlock();
     }
   }
 
   @Override
-  public synchronized void writeBuffers(List<ByteBuffer> buffers) throws IOException {
+  public void writeBuffers(List<ByteBuffer> buffers) throws IOException {
     if (buffers == null)
       return; // no data to write
-    for (ByteBuffer buffer : buffers) {
-      if (buffer.limit() == 0)
-        continue;
-      writeLength(buffer.limit()); // length-prefix
-      channel.write(buffer);
+    writeLock.lock();
+    try {
+      for (ByteBuffer buffer : buffers) {
+        if (buffer.limit() == 0)
+          continue;
+        writeLength(buffer.limit()); // length-prefix
+        channel.write(buffer);
+      }
+      writeLength(0); // null-terminate
+    } finally {
+      writeLock.unlock();
     }
-    writeLength(0); // null-terminate
   }
 
   private void writeLength(int length) throws IOException {
-    ((Buffer) header).clear();
-    header.putInt(length);
-    ((Buffer) header).flip();
-    channel.write(header);
+    ((Buffer) writeHeader).clear();
+    writeHeader.putInt(length);
+    ((Buffer) writeHeader).flip();
+    channel.write(writeHeader);
   }
 
   @Override
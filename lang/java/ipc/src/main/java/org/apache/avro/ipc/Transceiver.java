@@ -82,6 +82,18 @@ public abstract class Transceiver implements Closeable {
   /** Called by {@link Requestor#request(String,Object)} for one-way messages. */
   public abstract void writeBuffers(List<ByteBuffer> buffers) throws IOException;
 
+  /**
+   * True if the frames of a response can be read one at a time by
+   * {@link #readBuffers()} after {@link #writeBuffers(List)}, while holding the
+   * channel lock, so that streamed responses are received as they are sent.
+   * Returns false by default.
+   *
+   * @see Requestor#requestStream(String, Object)
+   */
+  public boolean supportsStreaming() {
+    return false;
+  }
+
   /**
    * True if a handshake has been completed for this connection. Used to determine
    * whether a handshake need be completed prior to a one-way message. Requests
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.ipc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pipelines calls over a socket {@link Transceiver}: each request is written
+ * without waiting for the responses to earlier ones, and a reader thread passes
+ * each response read to the callback of the oldest call in progress.
+ * <p>
+ * The socket wire protocol has no call serial numbers, so this relies on the
+ * server responding to the requests of a connection in order, as
+ * {@link SocketServer}, {@link SaslSocketServer} and {@link NioSocketServer}
+ * do. Callbacks are run on the reader thread, so they must not make synchronous
+ * calls over the same transceiver.
+ */
+class TransceiverPipeline {
+  private static final Logger LOG = LoggerFactory.getLogger(TransceiverPipeline.class);
+
+  private final Transceiver transceiver;
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private final Queue<Callback<List<ByteBuffer>>> calls = new ArrayDeque<>(); // guarded by this
+  private Thread reader;
+  private IOException failure;
+
+  TransceiverPipeline(Transceiver transceiver) {
+    this.transceiver = transceiver;
+  }
+
+  List<ByteBuffer> transceive(List<ByteBuffer> request) throws IOException {
+    CallFuture<List<ByteBuffer>> future = new CallFuture<>();
+    transceive(request, future);
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for a response");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  void transceive(List<ByteBuffer> request, Callback<List<ByteBuffer>> callback) throws IOException {
+    writeLock.lock(); // so calls are queued in the order they're written
+    try {
+      synchronized (this) {
+        if (failure != null) {
+          throw new IOException("Connection failed", failure);
+        }
+        calls.add(callback);
+        if (reader == null) {
+          reader = new Thread(this::read, "Pipeline reader for " + transceiver.getRemoteName());
+          reader.setDaemon(true);
+          reader.start();
+        }
+      }
+      try {
+        transceiver.writeBuffers(request);
+      } catch (IOException e) {
+        fail(e);
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private void read() {
+    try {
+      while (true) {
+        List<ByteBuffer> response = transceiver.readBuffers();
+        Callback<List<ByteBuffer>> call;
+        synchronized (this) {
+          call = calls.poll();
+        }
+        if (call == null) {
+          throw new IOException("Response without a request from " + transceiver.getRemoteName());
+        }
+        try {
+          call.handleResult(response);
+        } catch (RuntimeException e) {
+          LOG.warn("Error handling a response", e);
+        }
+      }
+    } catch (IOException e) {
+      LOG.debug("Stopped reading responses", e);
+      fail(e);
+    }
+  }
+
+  private void fail(IOException e) {
+    List<Callback<List<ByteBuffer>>> failed;
+    synchronized (this) {
+      if (failure == null) {
+        failure = e;
+      }
+      failed = new ArrayList<>(calls);
+      calls.clear();
+    }
+    for (Callback<List<ByteBuffer>> call : failed) {
+      call.handleError(e);
+    }
+  }
+}
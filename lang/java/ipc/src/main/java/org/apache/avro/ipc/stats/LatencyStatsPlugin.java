@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.ipc.stats;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.avro.Protocol.Message;
+import org.apache.avro.ipc.RPCContext;
+import org.apache.avro.ipc.RPCPlugin;
+import org.apache.avro.ipc.stats.Stopwatch.Ticks;
+
+/**
+ * Collects count, latency and payload size statistics about RPC calls, like
+ * {@link StatsPlugin}, but without locks, so that it can be used at high call
+ * rates. Each message has {@link LogLinearHistogram}s of its latencies and
+ * payload sizes, which report quantiles such as p99 with fixed memory.
+ * <p>
+ * Statistics are pulled with {@link #snapshot()}, e.g. by a metrics scraper.
+ * Latencies are in nanoseconds and sizes in bytes. Can be added to a Requestor
+ * (client), which sees the sizes of requests, or Responder (server), which sees
+ * the sizes of responses.
+ */
+public class LatencyStatsPlugin extends RPCPlugin {
+  private final Ticks ticks;
+  private final ConcurrentMap<Message, MessageRecorder> messages = new ConcurrentHashMap<>();
+  /** Start ticks of RPCs in flight. */
+  private final ConcurrentMap<RPCContext, Long> activeRpcs = new ConcurrentHashMap<>();
+
+  public LatencyStatsPlugin() {
+    this(Stopwatch.SYSTEM_TICKS);
+  }
+
+  LatencyStatsPlugin(Ticks ticks) {
+    this.ticks = ticks;
+  }
+
+  /** Returns the number of RPCs in flight. */
+  public int getActiveRpcs() {
+    return activeRpcs.size();
+  }
+
+  /** Returns the statistics of each message called so far, by message name. */
+  public Map<String, MessageStats> snapshot() {
+    Map<String, MessageStats> stats = new TreeMap<>();
+    for (Map.Entry<Message, MessageRecorder> entry : messages.entrySet()) {
+      MessageRecorder recorder = entry.getValue();
+      stats.put(entry.getKey().getName(), new MessageStats(recorder.latencies.snapshot(),
+          recorder.requestSizes.snapshot(), recorder.responseSizes.snapshot()));
+    }
+    return stats;
+  }
+
+  @Override
+  public void serverReceiveRequest(RPCContext context) {
+    activeRpcs.put(context, ticks.ticks());
+    recordSize(recorder(context).requestSizes, context.getRequestPayload());
+  }
+
+  @Override
+  public void serverSendResponse(RPCContext context) {
+    MessageRecorder recorder = recorder(context);
+    recordLatency(context, recorder);
+    recordSize(recorder.responseSizes, context.getResponsePayload());
+  }
+
+  @Override
+  public void clientSendRequest(RPCContext context) {
+    activeRpcs.put(context, ticks.ticks());
+    recordSize(recorder(context).requestSizes, context.getRequestPayload());
+  }
+
+  @Override
+  public void clientReceiveResponse(RPCContext context) {
+    MessageRecorder recorder = recorder(context);
+    recordLatency(context, recorder);
+    recordSize(recorder.responseSizes, context.getResponsePayload());
+  }
+
+  private void recordLatency(RPCContext context, MessageRecorder recorder) {
+    Long start = activeRpcs.remove(context);
+    if (start != null) { // else this was added during the call
+      recorder.latencies.record(ticks.ticks() - start);
+    }
+  }
+
+  private MessageRecorder recorder(RPCContext context) {
+    Message message = context.getMessage();
+    if (message == null)
+      throw new IllegalArgumentException();
+    MessageRecorder recorder = messages.get(message);
+    if (recorder == null) { // avoid computeIfAbsent's locking when present
+      recorder = messages.computeIfAbsent(message, m -> new MessageRecorder());
+    }
+    return recorder;
+  }
+
+  private static void recordSize(LogLinearHistogram sizes, List<ByteBuffer> payload) {
+    if (payload == null) { // not available on this side
+      return;
+    }
+    long size = 0;
+    for (ByteBuffer bb : payload) {
+      size += bb.limit();
+    }
+    sizes.record(size);
+  }
+
+  private static class MessageRecorder {
+    private final LogLinearHistogram latencies = new LogLinearHistogram();
+    private final LogLinearHistogram requestSizes = new LogLinearHistogram();
+    private final LogLinearHistogram responseSizes = new LogLinearHistogram();
+  }
+
+  /** The statistics of a message. */
+  public static class MessageStats {
+    private final LogLinearHistogram.Snapshot latencies;
+    private final LogLinearHistogram.Snapshot requestSizes;
+    private final LogLinearHistogram.Snapshot responseSizes;
+
+    MessageStats(LogLinearHistogram.Snapshot latencies, LogLinearHistogram.Snapshot requestSizes,
+        LogLinearHistogram.Snapshot responseSizes) {
+      this.latencies = latencies;
+      this.requestSizes = requestSizes;
+      this.responseSizes = responseSizes;
+    }
+
+    /** Returns the latencies of completed calls, in nanoseconds. */
+    public LogLinearHistogram.Snapshot getLatencies() {
+      return latencies;
+    }
+
+    /** Returns the sizes of requests, in bytes. */
+    public LogLinearHistogram.Snapshot getRequestSizes() {
+      return requestSizes;
+    }
+
+    /** Returns the sizes of responses, in bytes. */
+    public LogLinearHistogram.Snapshot getResponseSizes() {
+      return responseSizes;
+    }
+
+    @Override
+    public String toString() {
+      return "latencies: " + latencies + ", request sizes: " + requestSizes + ", response sizes: " + responseSizes;
+    }
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.avro.ipc.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free histogram of non-negative longs, with buckets whose width grows
+ * with their values: each power of two is split into 16 buckets, so any
+ * quantile is reported within about 3% of the recorded value, using fixed
+ * memory whatever the range of values.
+ * <p>
+ * Values are recorded into one of several stripes, chosen by the recording
+ * thread, so that threads seldom update the same counters. Stripes are only
+ * allocated once a thread records into them. A {@link Snapshot} sums the
+ * stripes, so it's consistent with each single value recorded, but not
+ * necessarily with values recorded concurrently.
+ */
+public class LogLinearHistogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  /** Enough buckets for the highest long. */
+  static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + SUB_BUCKETS;
+
+  /** Slots after the buckets of a stripe. */
+  private static final int SUM = BUCKETS;
+  private static final int MIN = BUCKETS + 1;
+  private static final int MAX = BUCKETS + 2;
+
+  private static final int MAX_STRIPES = 16;
+
+  private final AtomicReferenceArray<AtomicLongArray> stripes;
+  private final int stripeMask;
+
+  public LogLinearHistogram() {
+    int stripes = Integer.highestOneBit(Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors()));
+    this.stripes = new AtomicReferenceArray<>(stripes);
+    this.stripeMask = stripes - 1;
+  }
+
+  /** Returns the bucket of a value. */
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+  }
+
+  /** Returns the lowest value in a bucket. */
+  static long lowestValue(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+    return (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+  }
+
+  /** Returns the highest value in a bucket. */
+  static long highestValue(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+    return lowestValue(bucket) + ((1L << shift) - 1);
+  }
+
+  /** Records a value. Negative values are recorded as zero. */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    AtomicLongArray stripe = stripe();
+    stripe.incrementAndGet(bucket(value));
+    stripe.addAndGet(SUM, value);
+    long min;
+    while (value < (min = stripe.get(MIN)) && !stripe.compareAndSet(MIN, min, value)) {
+    }
+    long max;
+    while (value > (max = stripe.get(MAX)) && !stripe.compareAndSet(MAX, max, value)) {
+    }
+  }
+
+  private AtomicLongArray stripe() {
+    int index = (int) Thread.currentThread().getId() & stripeMask;
+    AtomicLongArray stripe = stripes.get(index);
+    if (stripe == null) {
+      AtomicLongArray created = new AtomicLongArray(MAX + 1);
+      created.set(MIN, Long.MAX_VALUE);
+      created.set(MAX, Long.MIN_VALUE);
+      stripes.compareAndSet(index, null, created);
+      stripe = stripes.get(index);
+    }
+    return stripe;
+  }
+
+  /** Returns the values recorded so far. */
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKETS];
+    long count = 0;
+    long sum = 0;
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (int i = 0; i < stripes.length(); i++) {
+      AtomicLongArray stripe = stripes.get(i);
+      if (stripe == null) {
+        continue;
+      }
+      for (int b = 0; b < BUCKETS; b++) {
+        long c = stripe.get(b);
+        counts[b] += c;
+        count += c;
+      }
+      sum += stripe.get(SUM);
+      min = Math.min(min, stripe.get(MIN));
+      max = Math.max(max, stripe.get(MAX));
+    }
+    return new Snapshot(counts, count, sum, min, max);
+  }
+
+  /** An immutable copy of the values recorded by a histogram. */
+  public static class Snapshot {
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long min;
+    private final long max;
+
+    Snapshot(long[] counts, long count, long sum, long min, long max) {
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+      this.min = count == 0 ? 0 : min;
+      this.max = count == 0 ? 0 : max;
+    }
+
+    /** Returns the number of values recorded. */
+    public long getCount() {
+      return count;
+    }
+
+    /** Returns the sum of the values recorded. */
+    public long getSum() {
+      return sum;
+    }
+
+    /** Returns the mean of the values recorded, or NaN if there are none. */
+    public double getMean() {
+      return count == 0 ? Double.NaN : (double) sum / count;
+    }
+
+    /** Returns the lowest value recorded, or 0 if there are none. */
+    public long getMin() {
+      return min;
+    }
+
+    /** Returns the highest value recorded, or 0 if there are none. */
+    public long getMax() {
+      return max;
+    }
+
+    /**
+     * Returns the value at a quantile, e.g. 0.99 for the 99th percentile, or 0 if
+     * no values were recorded.
+     */
+    public long getValueAtQuantile(double quantile) {
+      if (quantile < 0 || quantile > 1) {
+        throw new IllegalArgumentException("Not a quantile: " + quantile);
+      }
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(quantile * count));
+      long seen = 0;
+      for (int b = 0; b < counts.length; b++) {
+        seen += counts[b];
+        if (seen >= rank) {
+          long low = lowestValue(b);
+          long middle = low + (highestValue(b) - low) / 2;
+          return Math.max(min, Math.min(max, middle));
+        }
+      }
+      return max;
+    }
+
+    public long getP50() {
+      return getValueAtQuantile(0.5);
+    }
+
+    public long getP99() {
+      return getValueAtQuantile(0.99);
+    }
+
+    public long getP999() {
+      return getValueAtQuantile(0.999);
+    }
+
+    @Override
+    public String toString() {
+      return "count=" + count + " mean=" + getMean() + " min=" + min + " p50=" + getP50() + " p99=" + getP99()
+          + " p999=" + getP999() + " max=" + max;
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.ipc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.avro.Protocol;
+import org.apache.avro.Protocol.Message;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.ipc.generic.GenericRequestor;
+import org.apache.avro.ipc.generic.GenericResponder;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.util.ByteBufferInputStream;
+import org.apache.avro.util.ByteBufferOutputStream;
+import org.apache.avro.util.Utf8;
+import org.junit.Test;
+
+public class TestRequestorHandshake {
+  private static final Protocol SERVER = Protocol.parse("{\"protocol\":\"Greeter\",\"namespace\":\"test\","
+      + "\"messages\":{\"hello\":{\"request\":[{\"name\":\"name\",\"type\":\"string\"}],\"response\":\"string\"}}}");
+  private static final Protocol CLIENT = Protocol.parse("{\"protocol\":\"Greeter\",\"namespace\":\"test\","
+      + "\"doc\":\"client\",\"messages\":{\"hello\":{\"request\":[{\"name\":\"name\",\"type\":\"string\"}],"
+      + "\"response\":\"string\"}}}");
+
+  /**
+   * Servers in other languages may send a hash that isn't that of the protocol
+   * text as parsed and written again by Java. Later connections to them must
+   * still find the protocol by that hash.
+   */
+  @Test
+  public void unverifiedServerHash() throws Exception {
+    MD5 hash = new MD5(new byte[16]); // not that of any protocol text
+    Responder responder = new GenericResponder(SERVER) {
+      @Override
+      public Object respond(Message message, Object request) {
+        return new Utf8("hello " + ((GenericRecord) request).get("name"));
+      }
+    };
+    for (int i = 0; i < 3; i++) { // each with a new connection
+      Transceiver transceiver = new RehashingTransceiver(new LocalTransceiver(responder), ProtocolCache.hash(SERVER),
+          hash);
+      GenericRequestor requestor = new GenericRequestor(CLIENT, transceiver);
+      GenericRecord params = new GenericData.Record(CLIENT.getMessages().get("hello").getRequest());
+      params.put("name", "avro");
+      assertEquals(new Utf8("hello avro"), requestor.request("hello", params));
+      assertEquals(SERVER.getMessages().keySet(), requestor.getRemote().getMessages().keySet());
+    }
+  }
+
+  /** Replaces the server's hash in handshakes with another. */
+  private static class RehashingTransceiver extends Transceiver {
+    private final SpecificDatumWriter<HandshakeRequest> requestWriter = new SpecificDatumWriter<>(
+        HandshakeRequest.class);
+    private final SpecificDatumReader<HandshakeRequest> requestReader = new SpecificDatumReader<>(
+        HandshakeRequest.class);
+    private final SpecificDatumWriter<HandshakeResponse> responseWriter = new SpecificDatumWriter<>(
+        HandshakeResponse.class);
+    private final SpecificDatumReader<HandshakeResponse> responseReader = new SpecificDatumReader<>(
+        HandshakeResponse.class);
+    private final Transceiver server;
+    private final MD5 actual;
+    private final MD5 sent;
+
+    RehashingTransceiver(Transceiver server, MD5 actual, MD5 sent) {
+      this.server = server;
+      this.actual = actual;
+      this.sent = sent;
+    }
+
+    @Override
+    public String getRemoteName() throws IOException {
+      return "rehashed " + server.getRemoteName();
+    }
+
+    @Override
+    public List<ByteBuffer> transceive(List<ByteBuffer> request) throws IOException {
+      InputStream in = new ByteBufferInputStream(request);
+      HandshakeRequest handshake = requestReader.read(null, DecoderFactory.get().directBinaryDecoder(in, null));
+      if (sent.equals(handshake.getServerHash()))
+        handshake.setServerHash(actual);
+      List<ByteBuffer> response = server.transceive(rewrite(requestWriter, handshake, in));
+
+      in = new ByteBufferInputStream(response);
+      HandshakeResponse reply = responseReader.read(null, DecoderFactory.get().directBinaryDecoder(in, null));
+      if (actual.equals(reply.getServerHash()))
+        reply.setServerHash(sent);
+      return rewrite(responseWriter, reply, in);
+    }
+
+    private static <T> List<ByteBuffer> rewrite(SpecificDatumWriter<T> writer, T handshake, InputStream rest)
+        throws IOException {
+      ByteBufferOutputStream bbo = new ByteBufferOutputStream();
+      BinaryEncoder out = EncoderFactory.get().directBinaryEncoder(bbo, null);
+      writer.write(handshake, out);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      for (int n; (n = rest.read(buffer)) > 0;)
+        bytes.write(buffer, 0, n);
+      bbo.write(bytes.toByteArray());
+      return bbo.getBufferList();
+    }
+
+    @Override
+    public List<ByteBuffer> readBuffers() throws IOException {
+      throw new UnsupportedOperationException("Only calls are made through this");
+    }
+
+    @Override
+    public void writeBuffers(List<ByteBuffer> buffers) throws IOException {
+      throw new UnsupportedOperationException("Only calls are made through this");
+    }
+  }
+}
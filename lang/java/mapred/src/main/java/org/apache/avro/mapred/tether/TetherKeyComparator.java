@@ -25,6 +25,7 @@ import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.conf.Configuration;
 
 import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryComparator;
 import org.apache.avro.io.BinaryData;
 import org.apache.avro.mapred.AvroJob;
 
@@ -32,24 +33,27 @@ import org.apache.avro.mapred.AvroJob;
 class TetherKeyComparator extends Configured implements RawComparator<TetherData> {
 
   private Schema schema;
+  private BinaryComparator binaryComparator;
 
   @Override
   public void setConf(Configuration conf) {
     super.setConf(conf);
-    if (conf != null)
+    if (conf != null) {
       schema = AvroJob.getMapOutputSchema(conf);
+      binaryComparator = new BinaryComparator(schema);
+    }
   }
 
   @Override
   public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
-    int diff = BinaryData.compare(b1, BinaryData.skipLong(b1, s1), l1, b2, BinaryData.skipLong(b2, s2), l2, schema);
+    int diff = binaryComparator.compare(b1, BinaryData.skipLong(b1, s1), l1, b2, BinaryData.skipLong(b2, s2), l2);
     return diff == 0 ? -1 : diff;
   }
 
   @Override
   public int compare(TetherData x, TetherData y) {
     ByteBuffer b1 = x.buffer(), b2 = y.buffer();
-    int diff = BinaryData.compare(b1.array(), b1.position(), b2.array(), b2.position(), schema);
+    int diff = binaryComparator.compare(b1.array(), b1.position(), b2.array(), b2.position());
     return diff == 0 ? -1 : diff;
   }
 
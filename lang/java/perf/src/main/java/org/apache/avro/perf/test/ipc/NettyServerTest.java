@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.perf.test.ipc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Protocol;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.ipc.generic.GenericRequestor;
+import org.apache.avro.ipc.generic.GenericResponder;
+import org.apache.avro.ipc.netty.AdmissionControl;
+import org.apache.avro.ipc.netty.NettyServer;
+import org.apache.avro.ipc.netty.NettyTransceiver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Generates more load than a {@link NettyServer} can serve, from 64 client
+ * threads calling a message that takes about a millisecond, and samples the
+ * latency of calls without admission control, with fixed limits and with an
+ * adaptive limit. Calls rejected by admission control are included, as they
+ * complete quickly.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(64)
+public class NettyServerTest {
+
+  private static final Protocol PROTOCOL = Protocol.parse("{\"protocol\": \"Work\", \"messages\": {"
+      + "\"work\": {\"request\": [{\"name\": \"s\", \"type\": \"string\"}], \"response\": \"string\"}}}");
+
+  @Benchmark
+  public Object call(final TestStateServer server, final TestStateClient client) throws Exception {
+    try {
+      return client.requestor.request("work", client.request);
+    } catch (AvroRuntimeException e) { // rejected
+      return e;
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class TestStateServer {
+
+    @Param({ "none", "fixed", "adaptive" })
+    public String admission;
+
+    private NettyServer server;
+    private InetSocketAddress address;
+
+    @Setup(Level.Trial)
+    public void doSetupTrial() throws Exception {
+      GenericResponder responder = new GenericResponder(PROTOCOL) {
+        @Override
+        public Object respond(Protocol.Message message, Object request) throws Exception {
+          Thread.sleep(1);
+          return ((GenericRecord) request).get("s");
+        }
+      };
+      AdmissionControl control = null;
+      if (!"none".equals(admission)) {
+        control = new AdmissionControl(16, 16);
+        if ("adaptive".equals(admission)) {
+          control.setTargetLatency(2, TimeUnit.MILLISECONDS);
+        }
+      }
+      server = new NettyServer(responder, new InetSocketAddress("127.0.0.1", 0), null, null, null, null, null, control);
+      address = new InetSocketAddress("127.0.0.1", server.getPort());
+    }
+
+    @TearDown(Level.Trial)
+    public void doTearDownTrial() {
+      server.close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class TestStateClient {
+    private NettyTransceiver transceiver;
+    private GenericRequestor requestor;
+    private GenericRecord request;
+
+    @Setup(Level.Trial)
+    public void doSetupTrial(final TestStateServer server) throws Exception {
+      transceiver = new NettyTransceiver(server.address);
+      requestor = new GenericRequestor(PROTOCOL, transceiver);
+      request = new GenericData.Record(PROTOCOL.getMessages().get("work").getRequest());
+      request.put("s", "hello");
+      requestor.request("work", request); // handshake
+    }
+
+    @TearDown(Level.Trial)
+    public void doTearDownTrial() throws IOException {
+      transceiver.close();
+    }
+  }
+}
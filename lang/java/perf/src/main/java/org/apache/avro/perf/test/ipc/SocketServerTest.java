@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.perf.test.ipc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.Protocol;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.ipc.SaslSocketServer;
+import org.apache.avro.ipc.SaslSocketTransceiver;
+import org.apache.avro.ipc.Server;
+import org.apache.avro.ipc.SocketServer;
+import org.apache.avro.ipc.Transceiver;
+import org.apache.avro.ipc.generic.GenericRequestor;
+import org.apache.avro.ipc.generic.GenericResponder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures calls to a {@link SaslSocketServer} over loopback while many other
+ * simulated clients hold idle connections, with a thread per connection or with
+ * the executor from {@link SocketServer#newConnectionExecutor(int)}. Runs with
+ * 10000 clients need a limit of open files above 20000.
+ */
+public class SocketServerTest {
+
+  private static final Protocol PROTOCOL = Protocol.parse("{\"protocol\": \"Echo\", \"messages\": {"
+      + "\"echo\": {\"request\": [{\"name\": \"s\", \"type\": \"string\"}], \"response\": \"string\"}}}");
+
+  @Benchmark
+  public Object call(final TestStateServer state) throws Exception {
+    return state.requestor.request("echo", state.request);
+  }
+
+  @State(Scope.Thread)
+  public static class TestStateServer {
+
+    @Param({ "thread", "executor" })
+    public String mode;
+
+    @Param({ "100", "1000", "10000" })
+    public int clients;
+
+    private Server server;
+    private InetSocketAddress address;
+    private Transceiver client;
+    private GenericRequestor requestor;
+    private GenericRecord request;
+    private final List<SocketChannel> idle = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void doSetupTrial() throws Exception {
+      GenericResponder responder = new GenericResponder(PROTOCOL) {
+        @Override
+        public Object respond(Protocol.Message message, Object request) {
+          return ((GenericRecord) request).get("s");
+        }
+      };
+      InetSocketAddress any = new InetSocketAddress("127.0.0.1", 0);
+      if ("thread".equals(mode)) {
+        server = new SaslSocketServer(responder, any);
+      } else {
+        // bounded pools close connections beyond their threads, so call on the first
+        server = new SaslSocketServer(responder, any, SocketServer.newConnectionExecutor(64));
+      }
+      server.start();
+      address = new InetSocketAddress("127.0.0.1", server.getPort());
+
+      client = new SaslSocketTransceiver(address);
+      requestor = new GenericRequestor(PROTOCOL, client);
+      request = new GenericData.Record(PROTOCOL.getMessages().get("echo").getRequest());
+      request.put("s", "hello");
+      requestor.request("echo", request); // handshake
+
+      for (int i = 0; i < clients; i++) {
+        idle.add(SocketChannel.open(address));
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void doTearDownTrial() throws IOException {
+      for (SocketChannel channel : idle) {
+        channel.close();
+      }
+      idle.clear();
+      client.close();
+      server.close();
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.perf.test.json;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.JsonDatumReader;
+import org.apache.avro.perf.test.BasicState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares reading JSON records through the
+ * {@link org.apache.avro.io.JsonDecoder} grammar with reading them directly
+ * with a {@link JsonDatumReader}, for JSON whose fields follow the schema order
+ * and for JSON whose fields do not.
+ */
+public class JsonDecoderTest {
+
+  private static final String RECORD_SCHEMA = "{ \"type\": \"record\", \"name\": \"R\", \"fields\": [\n"
+      + "{ \"name\": \"f1\", \"type\": \"double\" },\n" + "{ \"name\": \"f2\", \"type\": \"double\" },\n"
+      + "{ \"name\": \"f3\", \"type\": \"double\" },\n" + "{ \"name\": \"f4\", \"type\": \"int\" },\n"
+      + "{ \"name\": \"f5\", \"type\": \"int\" },\n" + "{ \"name\": \"f6\", \"type\": \"string\" }\n" + "] }";
+
+  @Benchmark
+  @OperationsPerInvocation(BasicState.BATCH_SIZE)
+  public void decodeGrammar(final Blackhole blackhole, final TestStateDecode state) throws Exception {
+    final Decoder d = state.decoder;
+    final GenericDatumReader<Object> reader = new GenericDatumReader<>(state.schema);
+    for (int i = 0; i < state.getBatchSize(); i++) {
+      blackhole.consume(reader.read(null, d));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BasicState.BATCH_SIZE)
+  public void decodeDirect(final Blackhole blackhole, final TestStateDecode state) throws Exception {
+    final Decoder d = state.decoder;
+    final JsonDatumReader<Object> reader = new JsonDatumReader<>(state.schema);
+    for (int i = 0; i < state.getBatchSize(); i++) {
+      blackhole.consume(reader.read(null, d));
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class TestStateDecode extends BasicState {
+
+    @Param({ "true", "false" })
+    public boolean schemaOrder;
+
+    private final Schema schema;
+
+    private String testData;
+    private Decoder decoder;
+
+    public TestStateDecode() {
+      super();
+      this.schema = new Schema.Parser().parse(RECORD_SCHEMA);
+    }
+
+    /**
+     * Generate test data.
+     */
+    @Setup(Level.Trial)
+    public void doSetupTrial() {
+      final Random r = super.getRandom();
+      final StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < getBatchSize(); i++) {
+        String f1 = "\"f1\":" + r.nextDouble(), f2 = "\"f2\":" + r.nextDouble(), f3 = "\"f3\":" + r.nextDouble();
+        String f4 = "\"f4\":" + r.nextInt(), f5 = "\"f5\":" + r.nextInt(), f6 = "\"f6\":\"value" + r.nextInt() + "\"";
+        if (schemaOrder) {
+          sb.append('{').append(String.join(",", f1, f2, f3, f4, f5, f6)).append('}');
+        } else {
+          sb.append('{').append(String.join(",", f6, f4, f2, f5, f3, f1)).append('}');
+        }
+        sb.append('\n');
+      }
+      this.testData = sb.toString();
+    }
+
+    @Setup(Level.Invocation)
+    public void doSetupInvocation() throws IOException {
+      this.decoder = DecoderFactory.get().jsonDecoder(this.schema, this.testData);
+    }
+  }
+}
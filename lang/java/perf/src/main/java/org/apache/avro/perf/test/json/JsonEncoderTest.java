@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.perf.test.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.io.JsonEncoder;
+import org.apache.avro.message.JsonMessageEncoder;
+import org.apache.avro.perf.test.BasicState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares writing records with a {@link JsonEncoder} and a
+ * {@link GenericDatumWriter} with writing them with a precompiled
+ * {@link JsonMessageEncoder}.
+ */
+public class JsonEncoderTest {
+
+  private static final String RECORD_SCHEMA = "{ \"type\": \"record\", \"name\": \"R\", \"fields\": [\n"
+      + "{ \"name\": \"f1\", \"type\": \"double\" },\n" + "{ \"name\": \"f2\", \"type\": \"double\" },\n"
+      + "{ \"name\": \"f3\", \"type\": \"long\" },\n" + "{ \"name\": \"f4\", \"type\": \"int\" },\n"
+      + "{ \"name\": \"f5\", \"type\": [\"null\", \"int\"] },\n" + "{ \"name\": \"f6\", \"type\": \"string\" }\n"
+      + "] }";
+
+  @Benchmark
+  @OperationsPerInvocation(BasicState.BATCH_SIZE)
+  public void encodeJsonEncoder(final TestStateEncode state) throws Exception {
+    final JsonEncoder encoder = state.encoder;
+    for (final GenericRecord r : state.testData) {
+      state.writer.write(r, encoder);
+    }
+    encoder.flush();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BasicState.BATCH_SIZE)
+  public void encodeMessageEncoder(final TestStateEncode state) throws Exception {
+    for (final GenericRecord r : state.testData) {
+      state.messageEncoder.encode(r, state.out);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class TestStateEncode extends BasicState {
+
+    private final Schema schema;
+
+    private GenericRecord[] testData;
+    private GenericDatumWriter<GenericRecord> writer;
+    private JsonMessageEncoder<GenericRecord> messageEncoder;
+    private ByteArrayOutputStream out;
+    private JsonEncoder encoder;
+
+    public TestStateEncode() {
+      super();
+      this.schema = new Schema.Parser().parse(RECORD_SCHEMA);
+    }
+
+    /**
+     * Generate test data.
+     */
+    @Setup(Level.Trial)
+    public void doSetupTrial() {
+      final Random r = super.getRandom();
+      this.testData = new GenericRecord[getBatchSize()];
+      for (int i = 0; i < testData.length; i++) {
+        final GenericRecord rec = new GenericData.Record(schema);
+        rec.put(0, r.nextDouble());
+        rec.put(1, r.nextDouble());
+        rec.put(2, r.nextLong());
+        rec.put(3, r.nextInt());
+        rec.put(4, r.nextBoolean() ? null : r.nextInt());
+        rec.put(5, "value" + r.nextInt());
+        this.testData[i] = rec;
+      }
+      this.writer = new GenericDatumWriter<>(schema);
+      this.messageEncoder = new JsonMessageEncoder<>(GenericData.get(), schema);
+    }
+
+    @Setup(Level.Invocation)
+    public void doSetupInvocation() throws IOException {
+      this.out = new ByteArrayOutputStream(getBatchSize() * 128);
+      this.encoder = EncoderFactory.get().jsonEncoder(schema, out);
+    }
+  }
+}
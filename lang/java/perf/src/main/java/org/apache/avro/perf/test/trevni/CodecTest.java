@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.avro.perf.test.trevni;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import org.apache.trevni.ColumnFileMetaData;
+import org.apache.trevni.ColumnFileReader;
+import org.apache.trevni.ColumnFileWriter;
+import org.apache.trevni.ColumnMetaData;
+import org.apache.trevni.ColumnValues;
+import org.apache.trevni.InputBytes;
+import org.apache.trevni.ValueType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the Trevni codecs writing and reading typical columns: sequential
+ * ids, timestamps, a low cardinality string, measurements and free text. The
+ * size of each file written is printed when set up.
+ */
+public class CodecTest {
+
+  private static final int ROWS = 100000;
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public byte[] write(final TestState state) throws Exception {
+    return state.write();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public long read(final TestState state) throws Exception {
+    long total = 0;
+    ColumnFileReader reader = new ColumnFileReader(new InputBytes(state.file));
+    for (int column = 0; column < reader.getColumnCount(); column++) {
+      ColumnValues<Comparable> values = reader.getValues(column);
+      while (values.hasNext()) {
+        total += values.next().hashCode();
+      }
+    }
+    return total;
+  }
+
+  @State(Scope.Thread)
+  public static class TestState {
+
+    @Param({ "null", "deflate", "snappy", "bzip2", "zstandard", "xz" })
+    public String codec;
+
+    @Param({ "plain", "auto" })
+    public String encoding;
+
+    private Object[][] rows;
+    private byte[] file;
+
+    @Setup(Level.Trial)
+    public void doSetupTrial() throws Exception {
+      Random random = new Random(13);
+      String[] words = { "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "and", "runs" };
+      rows = new Object[ROWS][];
+      long time = 1600000000000L;
+      for (int i = 0; i < ROWS; i++) {
+        time += random.nextInt(1000);
+        StringBuilder text = new StringBuilder();
+        for (int j = random.nextInt(12); j >= 0; j--) {
+          text.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        rows[i] = new Object[] { (long) i, time, "host-" + random.nextInt(50), random.nextGaussian() * 100,
+            text.toString() };
+      }
+      file = write();
+    }
+
+    byte[] write() throws Exception {
+      ColumnFileWriter writer = new ColumnFileWriter(new ColumnFileMetaData().setCodec(codec).setEncoding(encoding),
+          new ColumnMetaData("id", ValueType.LONG), new ColumnMetaData("time", ValueType.LONG),
+          new ColumnMetaData("host", ValueType.STRING), new ColumnMetaData("value", ValueType.DOUBLE),
+          new ColumnMetaData("text", ValueType.STRING));
+      for (Object[] row : rows) {
+        writer.writeRow(row);
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      writer.writeTo(out);
+      return out.toByteArray();
+    }
+  }
+}
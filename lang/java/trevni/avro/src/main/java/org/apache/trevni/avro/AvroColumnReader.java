@@ -21,14 +21,27 @@ package org.apache.trevni.avro;
 import java.io.IOException;
 import java.io.Closeable;
 import java.io.File;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
-
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.apache.trevni.BlockCache;
 import org.apache.trevni.ColumnMetaData;
 import org.apache.trevni.ColumnFileReader;
+import org.apache.trevni.ColumnPredicate;
 import org.apache.trevni.ColumnValues;
 import org.apache.trevni.Input;
 import org.apache.trevni.InputFile;
@@ -43,7 +56,21 @@ import static org.apache.trevni.avro.AvroColumnator.isSimple;
 /**
  * Read files written with {@link AvroColumnWriter}. A subset of the schema used
  * for writing may be specified when reading. In this case only columns of the
- * subset schema are read.
+ * subset schema are read, e.g., only the column of a field of records nested in
+ * arrays, and the column of array lengths, which is shared by all the fields of
+ * the array's records that are read.
+ * <p>
+ * If {@link Params#setPredicates(ColumnPredicate...) predicates} are given,
+ * rows in blocks that can't match them are skipped without being read. Other
+ * rows are all returned, so should still be tested.
+ * <p>
+ * If {@link Params#setReadAhead(int) read-ahead} is set, the blocks of each
+ * column are read and decompressed in parallel with record assembly.
+ * <p>
+ * Files written in row groups may be read in parts, by
+ * {@link Params#setRowGroups(int, int) row group} or by
+ * {@link Params#setSplit(long, long) split}, e.g., by
+ * {@link #readParallel(Supplier, Executor, Consumer)}.
  */
 public class AvroColumnReader<D> implements Iterator<D>, Iterable<D>, Closeable {
 
@@ -53,9 +80,16 @@ public class AvroColumnReader<D> implements Iterator<D>, Iterable<D>, Closeable
   private Schema readSchema;
 
   private ColumnValues[] values;
+  private boolean[] seekable; // columns without parent or children
   private int[] arrayWidths;
   private int column; // current index in values
 
+  private long row; // the next row
+  private long[] ranges; // of rows that may match predicates, or null
+  private int range; // index of the current range in ranges
+
+  private ExecutorService prefetch; // if created by this reader
+
   private Map<String, Map<String, Object>> defaults = new HashMap<>();
 
   /** Parameters for reading an Avro column file. */
@@ -63,6 +97,15 @@ public class AvroColumnReader<D> implements Iterator<D>, Iterable<D>, Closeable
     Input input;
     Schema schema;
     GenericData model = GenericData.get();
+    ColumnPredicate[] predicates = new ColumnPredicate[0];
+    int readAhead;
+    Executor executor;
+    BlockCache cache;
+    int bufferSize;
+    int firstRowGroup;
+    int endRowGroup = -1; // all
+    long splitStart;
+    long splitLength = -1; // none
 
     /** Construct reading from a file. */
     public Params(File file) throws IOException {
@@ -80,6 +123,77 @@ public class AvroColumnReader<D> implements Iterator<D>, Iterable<D>, Closeable
       return this;
     }
 
+    /**
+     * Skip rows in blocks that can't match these predicates. Columns are named as
+     * by {@link AvroColumnWriter}, e.g., "a#b" for field b of record field a, and
+     * enum values are compared by ordinal. Only files written with
+     * {@link org.apache.trevni.MetaData#hasStatistics(boolean) statistics} can have
+     * blocks skipped.
+     */
+    public Params setPredicates(ColumnPredicate... predicates) {
+      this.predicates = predicates;
+      return this;
+    }
+
+    /**
+     * Read and decompress up to this many blocks of each column ahead of the
+     * records being read, in other threads. Costs memory for about this many blocks
+     * of each column read. The default is zero, reading blocks as needed.
+     */
+    public Params setReadAhead(int blocks) {
+      this.readAhead = blocks;
+      return this;
+    }
+
+    /**
+     * Set the executor to read ahead with. By default, a reader with
+     * {@link #setReadAhead(int) read-ahead} creates a thread per column, up to the
+     * number of processors, which are stopped when it's closed.
+     */
+    public Params setExecutor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /** Set a cache to share the blocks read with other readers of the input. */
+    public Params setBlockCache(BlockCache cache) {
+      this.cache = cache;
+      return this;
+    }
+
+    /**
+     * Read up to this many bytes of each column at a time, so that consecutive
+     * blocks are read together.
+     *
+     * @see ColumnFileReader#setBufferSize(int)
+     */
+    public Params setBufferSize(int bufferSize) {
+      this.bufferSize = bufferSize;
+      return this;
+    }
+
+    /**
+     * Read only row groups from {@code start} to {@code end}, not included.
+     *
+     * @see ColumnFileReader#setRowGroups(int, int)
+     */
+    public Params setRowGroups(int start, int end) {
+      this.firstRowGroup = start;
+      this.endRowGroup = end;
+      return this;
+    }
+
+    /**
+     * Read only the row groups that start within a split of the file.
+     *
+     * @see ColumnFileReader#setSplit(long, long)
+     */
+    public Params setSplit(long start, long length) {
+      this.splitStart = start;
+      this.splitLength = length;
+      return this;
+    }
+
     /** Set data representation. */
     public Params setModel(GenericData model) {
       this.model = model;
@@ -90,10 +204,74 @@ public class AvroColumnReader<D> implements Iterator<D>, Iterable<D>, Closeable
   /** Construct a reader for a file. */
   public AvroColumnReader(Params params) throws IOException {
     this.reader = new ColumnFileReader(params.input);
+    reader.setBlockCache(params.cache);
+    if (params.bufferSize > 0)
+      reader.setBufferSize(params.bufferSize);
+    if (params.splitLength >= 0)
+      reader.setSplit(params.splitStart, params.splitLength);
+    else if (params.endRowGroup >= 0)
+      reader.setRowGroups(params.firstRowGroup, params.endRowGroup);
     this.model = params.model;
     this.fileSchema = new Schema.Parser().parse(reader.getMetaData().getString(AvroColumnWriter.SCHEMA_KEY));
     this.readSchema = params.schema == null ? fileSchema : params.schema;
     initialize();
+    if (params.predicates.length > 0)
+      this.ranges = reader.findRows(params.predicates);
+    if (params.readAhead > 0)
+      startPrefetch(params);
+  }
+
+  private void startPrefetch(Params params) throws IOException {
+    Executor executor = params.executor;
+    if (executor == null) {
+      int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), values.length));
+      this.prefetch = Executors.newFixedThreadPool(threads, r -> {
+        Thread thread = new Thread(r, "trevni-prefetch");
+        thread.setDaemon(true);
+        return thread;
+      });
+      executor = prefetch;
+    }
+    for (ColumnValues v : values)
+      if (v != null)
+        v.setPrefetch(executor, params.readAhead);
+  }
+
+  /**
+   * Read all rows of a file, reading each row group with a separate reader on an
+   * executor, and pass them to an action. The rows of each row group are passed
+   * in order, but those of different row groups may be passed concurrently, so
+   * the action must be thread safe.
+   *
+   * @param params supplies the parameters of each reader, each with its own input
+   */
+  public static <D> void readParallel(Supplier<Params> params, Executor executor, Consumer<? super D> action)
+      throws IOException {
+    int groups;
+    try (ColumnFileReader file = new ColumnFileReader(params.get().input)) {
+      groups = file.getRowGroupCount();
+    }
+    CompletableFuture<?>[] reads = new CompletableFuture[groups];
+    for (int group = 0; group < groups; group++) {
+      Params groupParams = params.get().setRowGroups(group, group + 1);
+      reads[group] = CompletableFuture.runAsync(() -> {
+        try (AvroColumnReader<D> reader = new AvroColumnReader<>(groupParams)) {
+          for (D datum : reader)
+            action.accept(datum);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }, executor);
+    }
+    try {
+      CompletableFuture.allOf(reads).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof UncheckedIOException)
+        throw ((UncheckedIOException) e.getCause()).getCause();
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw e;
+    }
   }
 
   /** Return the schema for data in this file. */
@@ -108,18 +286,57 @@ public class AvroColumnReader<D> implements Iterator<D>, Iterable<D>, Closeable
     for (ColumnMetaData c : new AvroColumnator(fileSchema).getColumns())
       fileColumnNumbers.put(c.getName(), i++);
 
-    // create iterator for each column in readSchema
-    AvroColumnator readColumnator = new AvroColumnator(readSchema);
+    // create iterator for each column in readSchema that's in the file
+    findDefaults(readSchema, fileSchema);
+    AvroColumnator readColumnator = new AvroColumnator(prune(readSchema, new IdentityHashMap<>()));
     this.arrayWidths = readColumnator.getArrayWidths();
     ColumnMetaData[] readColumns = readColumnator.getColumns();
     this.values = new ColumnValues[readColumns.length];
+    this.seekable = new boolean[readColumns.length];
     int j = 0;
     for (ColumnMetaData c : readColumns) {
       Integer n = fileColumnNumbers.get(c.getName());
-      if (n != null)
+      if (n != null) {
+        ColumnMetaData fileColumn = reader.getColumnMetaData(n);
+        seekable[j] = fileColumn.getParent() == null && fileColumn.getChildren().isEmpty();
         values[j++] = reader.getValues(n);
+      }
     }
-    findDefaults(readSchema, fileSchema);
+  }
+
+  // remove fields with defaults, which have no columns, from a read schema
+  private Schema prune(Schema read, Map<Schema, Schema> pruned) {
+    Schema result = pruned.get(read);
+    if (result != null)
+      return result;
+    switch (read.getType()) {
+    case MAP:
+      result = Schema.createMap(prune(read.getValueType(), pruned));
+      break;
+    case ARRAY:
+      result = Schema.createArray(prune(read.getElementType(), pruned));
+      break;
+    case UNION:
+      List<Schema> branches = new ArrayList<>();
+      for (Schema branch : read.getTypes())
+        branches.add(prune(branch, pruned));
+      result = Schema.createUnion(branches);
+      break;
+    case RECORD:
+      Map<String, Object> rDefaults = defaults.get(read.getFullName());
+      result = Schema.createRecord(read.getName(), read.getDoc(), read.getNamespace(), read.isError());
+      pruned.put(read, result);
+      List<Field> fields = new ArrayList<>();
+      for (Field f : read.getFields())
+        if (rDefaults == null || !rDefaults.containsKey(f.name()))
+          fields.add(new Field(f, prune(f.schema(), pruned)));
+      result.setFields(fields);
+      break;
+    default:
+      result = read;
+    }
+    pruned.put(read, result);
+    return result;
   }
 
   // get defaults for fields in read that are not in write
@@ -179,10 +396,14 @@ public class AvroColumnReader<D> implements Iterator<D>, Iterable<D>, Closeable
 
   @Override
   public boolean hasNext() {
-    return values[0].hasNext();
+    if (ranges == null)
+      return row < reader.getRowCount();
+    while (range < ranges.length && row >= ranges[range + 1])
+      range += 2;
+    return range < ranges.length;
   }
 
-  /** Return the number of rows in this file. */
+  /** Return the number of rows in this file, or in the row groups read. */
   public long getRowCount() {
     return reader.getRowCount();
   }
@@ -190,6 +411,13 @@ public class AvroColumnReader<D> implements Iterator<D>, Iterable<D>, Closeable
   @Override
   public D next() {
     try {
+      if (ranges != null) {
+        if (!hasNext())
+          throw new NoSuchElementException();
+        if (row < ranges[range])
+          skipTo(ranges[range]);
+      }
+      row++;
       for (ColumnValues value : values)
         if (value != null)
           value.startRow();
@@ -260,6 +488,92 @@ public class AvroColumnReader<D> implements Iterator<D>, Iterable<D>, Closeable
     }
   }
 
+  /**
+   * Move all columns to a row: seek columns that can seek, and read past the rows
+   * before it in the others.
+   */
+  private void skipTo(long target) throws IOException {
+    boolean readPast = false;
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null)
+        continue;
+      if (seekable[i])
+        values[i].seek(target);
+      else
+        readPast = true;
+    }
+    for (; readPast && row < target; row++) {
+      for (int i = 0; i < values.length; i++)
+        if (values[i] != null && !seekable[i])
+          values[i].startRow();
+      this.column = 0;
+      skip(readSchema);
+    }
+    row = target;
+  }
+
+  /**
+   * Like {@link #read(Schema)}, but discards values and ignores seekable ones.
+   */
+  private void skip(Schema s) throws IOException {
+    if (isSimple(s)) {
+      if (!seekable[column])
+        values[column].nextValue();
+      column++;
+      return;
+    }
+
+    final int startColumn = column;
+
+    switch (s.getType()) {
+    case MAP:
+      int size = values[column].nextLength();
+      for (int i = 0; i < size; i++) {
+        this.column = startColumn;
+        values[column++].nextValue(); // null in parent
+        values[column++].nextValue(); // key
+        skip(s.getValueType()); // value
+      }
+      column = startColumn + arrayWidths[startColumn];
+      break;
+    case RECORD:
+      Map<String, Object> rDefaults = defaults.get(s.getFullName());
+      for (Field f : s.getFields())
+        if (rDefaults == null || !rDefaults.containsKey(f.name()))
+          skip(f.schema());
+      break;
+    case ARRAY:
+      if (seekable[column]) {
+        column += arrayWidths[column];
+        break;
+      }
+      int length = values[column].nextLength();
+      for (int i = 0; i < length; i++) {
+        this.column = startColumn;
+        values[column++].nextValue();
+        if (!isSimple(s.getElementType()))
+          skip(s.getElementType());
+      }
+      column = startColumn + arrayWidths[startColumn];
+      break;
+    case UNION:
+      for (Schema branch : s.getTypes()) {
+        if (branch.getType() == Schema.Type.NULL)
+          continue;
+        if (!seekable[column] && values[column].nextLength() == 1) {
+          values[column++].nextValue();
+          if (!isSimple(branch))
+            skip(branch);
+        } else {
+          column += arrayWidths[column];
+        }
+      }
+      break;
+    default:
+      throw new TrevniRuntimeException("Unknown schema: " + s);
+    }
+  }
+
   private Object nextValue(Schema s, int column) throws IOException {
     Object v = values[column].nextValue();
 
@@ -280,7 +594,15 @@ public class AvroColumnReader<D> implements Iterator<D>, Iterable<D>, Closeable
 
   @Override
   public void close() throws IOException {
-    reader.close();
+    try {
+      for (ColumnValues v : values) // before the input is closed
+        if (v != null)
+          v.stopPrefetch();
+    } finally {
+      if (prefetch != null)
+        prefetch.shutdown();
+      reader.close();
+    }
   }
 
 }
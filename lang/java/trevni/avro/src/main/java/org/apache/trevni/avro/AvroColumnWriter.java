@@ -17,6 +17,7 @@
  */
 package org.apache.trevni.avro;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.File;
 import java.io.OutputStream;
@@ -44,9 +45,13 @@ import static org.apache.trevni.avro.AvroColumnator.isSimple;
  * <p>
  * Output is buffered until {@link #writeTo(OutputStream)} is called. The
  * {@link #sizeEstimate()} indicates both the amount of data buffered and the
- * size of the file that will be written.
+ * size of the file that will be written. With a spill directory, completed
+ * blocks are buffered in a temporary file rather than in memory, which is
+ * deleted by {@link #close()}. With an output stream, rows are instead written
+ * to it in row groups as they are added, and the file is completed by
+ * {@link #close()}.
  */
-public class AvroColumnWriter<D> {
+public class AvroColumnWriter<D> implements Closeable {
   private Schema schema;
   private GenericData model;
   private ColumnFileWriter writer;
@@ -59,10 +64,43 @@ public class AvroColumnWriter<D> {
   }
 
   public AvroColumnWriter(Schema s, ColumnFileMetaData meta, GenericData model) throws IOException {
+    this(s, meta, model, null, false);
+  }
+
+  /**
+   * Construct a writer that spills completed blocks to a temporary file in
+   * {@code spillDir}, or in the default temporary-file directory if null, so that
+   * files larger than memory can be written.
+   */
+  public AvroColumnWriter(Schema s, ColumnFileMetaData meta, GenericData model, File spillDir) throws IOException {
+    this(s, meta, model, spillDir, true);
+  }
+
+  /**
+   * Construct a writer that writes rows to {@code out} as they are added, in row
+   * groups of about {@code rowGroupSize} bytes, so that only a row group is
+   * buffered. The last row group is written by {@link #close()}.
+   *
+   * @see ColumnFileWriter#ColumnFileWriter(ColumnFileMetaData, OutputStream,
+   *      long, org.apache.trevni.ColumnMetaData...)
+   */
+  public AvroColumnWriter(Schema s, ColumnFileMetaData meta, GenericData model, OutputStream out, long rowGroupSize)
+      throws IOException {
     this.schema = s;
     AvroColumnator columnator = new AvroColumnator(s);
     meta.set(SCHEMA_KEY, s.toString()); // save schema in file
-    this.writer = new ColumnFileWriter(meta, columnator.getColumns());
+    this.writer = new ColumnFileWriter(meta, out, rowGroupSize, columnator.getColumns());
+    this.arrayWidths = columnator.getArrayWidths();
+    this.model = model;
+  }
+
+  private AvroColumnWriter(Schema s, ColumnFileMetaData meta, GenericData model, File spillDir, boolean spill)
+      throws IOException {
+    this.schema = s;
+    AvroColumnator columnator = new AvroColumnator(s);
+    meta.set(SCHEMA_KEY, s.toString()); // save schema in file
+    this.writer = spill ? new ColumnFileWriter(meta, spillDir, columnator.getColumns())
+        : new ColumnFileWriter(meta, columnator.getColumns());
     this.arrayWidths = columnator.getArrayWidths();
     this.model = model;
   }
@@ -87,6 +125,15 @@ public class AvroColumnWriter<D> {
     writer.writeTo(file);
   }
 
+  /**
+   * Write the last row group, if written in row groups, and delete any spilled
+   * blocks. The file can no longer be written.
+   */
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+
   /** Add a row to the file. */
   public void write(D value) throws IOException {
     writer.startRow();
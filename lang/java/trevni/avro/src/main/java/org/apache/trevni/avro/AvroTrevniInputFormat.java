@@ -23,8 +23,6 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.fs.FileSystem;
-import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.FileInputFormat;
@@ -41,14 +39,25 @@ import org.apache.avro.mapred.AvroWrapper;
  * An {@link org.apache.hadoop.mapred.InputFormat} for Trevni files.
  *
  * <p>
+ * Files are split by row group, so files written in row groups, e.g., with
+ * {@link AvroTrevniOutputFormat#setRowGroupSize(JobConf, long)}, may be read by
+ * several tasks.
+ *
+ * <p>
  * A subset schema to be read may be specified with
  * {@link AvroJob#setInputSchema(JobConf,Schema)}.
  */
 public class AvroTrevniInputFormat<T> extends FileInputFormat<AvroWrapper<T>, NullWritable> {
 
-  @Override
-  protected boolean isSplitable(FileSystem fs, Path filename) {
-    return false;
+  /** The number of bytes of each column to read at a time. */
+  public static final String BUFFER_SIZE = "trevni.input.buffer.size";
+
+  /**
+   * Read up to this many bytes of each column at a time, so that fewer, larger
+   * reads are made of the filesystem.
+   */
+  public static void setBufferSize(JobConf job, int size) {
+    job.setInt(BUFFER_SIZE, size);
   }
 
   @Override
@@ -69,6 +78,8 @@ public class AvroTrevniInputFormat<T> extends FileInputFormat<AvroWrapper<T>, Nu
 
     final AvroColumnReader.Params params = new AvroColumnReader.Params(new HadoopInput(file.getPath(), job));
     params.setModel(ReflectData.get());
+    params.setBufferSize(job.getInt(BUFFER_SIZE, 0));
+    params.setSplit(file.getStart(), file.getLength());
     if (job.get(AvroJob.INPUT_SCHEMA) != null)
       params.setSchema(AvroJob.getInputSchema(job));
 
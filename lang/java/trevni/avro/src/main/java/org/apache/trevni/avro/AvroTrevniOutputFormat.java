@@ -47,7 +47,9 @@ import org.apache.trevni.ColumnFileMetaData;
  * Writes a directory of files per task, each comprising a single filesystem
  * block. To reduce the number of files, increase the default filesystem block
  * size for the job. Each task also requires enough memory to buffer a
- * filesystem block.
+ * filesystem block, unless a file size is set with
+ * {@link #setFileSize(JobConf, long)}, or files are written in row groups with
+ * {@link #setRowGroupSize(JobConf, long)}.
  */
 public class AvroTrevniOutputFormat<T> extends FileOutputFormat<AvroWrapper<T>, NullWritable> {
 
@@ -56,11 +58,35 @@ public class AvroTrevniOutputFormat<T> extends FileOutputFormat<AvroWrapper<T>,
 
   public static final String META_PREFIX = "trevni.meta.";
 
+  /** The size of output files, if not the filesystem block size. */
+  public static final String FILE_SIZE = "trevni.output.file.size";
+
+  /** The size of row groups, if output files are written in row groups. */
+  public static final String ROW_GROUP_SIZE = "trevni.output.row.group.size";
+
   /** Add metadata to job output files. */
   public static void setMeta(JobConf job, String key, String value) {
     job.set(META_PREFIX + key, value);
   }
 
+  /**
+   * Cut output files at a size rather than at the filesystem block size. Blocks
+   * are then buffered in a local temporary file rather than in memory, so files
+   * may be larger than a task's memory.
+   */
+  public static void setFileSize(JobConf job, long size) {
+    job.setLong(FILE_SIZE, size);
+  }
+
+  /**
+   * Write a single file per task, in row groups of about this size, rather than a
+   * file per filesystem block. Only a row group is buffered, and
+   * {@link AvroTrevniInputFormat} splits files by row group.
+   */
+  public static void setRowGroupSize(JobConf job, long size) {
+    job.setLong(ROW_GROUP_SIZE, size);
+  }
+
   @Override
   public RecordWriter<AvroWrapper<T>, NullWritable> getRecordWriter(FileSystem ignore, final JobConf job,
       final String name, Progressable prog) throws IOException {
@@ -74,25 +100,53 @@ public class AvroTrevniOutputFormat<T> extends FileOutputFormat<AvroWrapper<T>,
     final FileSystem fs = dir.getFileSystem(job);
     if (!fs.mkdirs(dir))
       throw new IOException("Failed to create directory: " + dir);
-    final long blockSize = fs.getDefaultBlockSize(dir);
+    final long rowGroupSize = job.getLong(ROW_GROUP_SIZE, 0);
+    if (rowGroupSize > 0) {
+      final OutputStream out = fs.create(new Path(dir, "part-0" + EXT));
+      final AvroColumnWriter<T> writer = new AvroColumnWriter<>(schema, meta, ReflectData.get(), out, rowGroupSize);
+      return new RecordWriter<AvroWrapper<T>, NullWritable>() {
+        @Override
+        public void write(AvroWrapper<T> wrapper, NullWritable ignore) throws IOException {
+          writer.write(wrapper.datum());
+        }
+
+        @Override
+        public void close(Reporter reporter) throws IOException {
+          try (OutputStream o = out) {
+            writer.close(); // write the last row group
+          }
+        }
+      };
+    }
+
+    final boolean spill = job.getLong(FILE_SIZE, 0) > 0;
+    final long fileSize = spill ? job.getLong(FILE_SIZE, 0) : fs.getDefaultBlockSize(dir);
 
     return new RecordWriter<AvroWrapper<T>, NullWritable>() {
       private int part = 0;
 
-      private AvroColumnWriter<T> writer = new AvroColumnWriter<>(schema, meta, ReflectData.get());
+      private AvroColumnWriter<T> writer = newWriter();
+
+      private AvroColumnWriter<T> newWriter() throws IOException {
+        return spill ? new AvroColumnWriter<>(schema, meta, ReflectData.get(), null)
+            : new AvroColumnWriter<>(schema, meta, ReflectData.get());
+      }
 
       private void flush() throws IOException {
         try (OutputStream out = fs.create(new Path(dir, "part-" + (part++) + EXT))) {
           writer.writeTo(out);
+        } finally {
+          writer.close();
         }
-        writer = new AvroColumnWriter<>(schema, meta, ReflectData.get());
       }
 
       @Override
       public void write(AvroWrapper<T> wrapper, NullWritable ignore) throws IOException {
         writer.write(wrapper.datum());
-        if (writer.sizeEstimate() >= blockSize) // block full
+        if (writer.sizeEstimate() >= fileSize) { // file full
           flush();
+          writer = newWriter();
+        }
       }
 
       public void close(Reporter reporter) throws IOException {
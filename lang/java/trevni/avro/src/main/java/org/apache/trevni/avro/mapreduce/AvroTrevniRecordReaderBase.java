@@ -40,10 +40,16 @@ import org.apache.trevni.avro.HadoopInput;
  */
 public abstract class AvroTrevniRecordReaderBase<K, V, T> extends RecordReader<K, V> {
 
+  /**
+   * The number of bytes of each column to read at a time, so that fewer, larger
+   * reads are made of the filesystem.
+   */
+  public static final String BUFFER_SIZE = "trevni.input.buffer.size";
+
   /** The Trevni file reader */
   private AvroColumnReader<T> reader;
 
-  /** Number of rows in the Trevni file */
+  /** Number of rows in the split of the Trevni file */
   private float rows;
 
   /** The current row number being read in */
@@ -61,6 +67,8 @@ public abstract class AvroTrevniRecordReaderBase<K, V, T> extends RecordReader<K
     final AvroColumnReader.Params params = new AvroColumnReader.Params(
         new HadoopInput(file.getPath(), context.getConfiguration()));
     params.setModel(ReflectData.get());
+    params.setBufferSize(context.getConfiguration().getInt(BUFFER_SIZE, 0));
+    params.setSplit(file.getStart(), file.getLength());
 
     if (AvroJob.getInputKeySchema(context.getConfiguration()) != null) {
       params.setSchema(AvroJob.getInputKeySchema(context.getConfiguration()));
@@ -51,6 +51,19 @@ public abstract class AvroTrevniRecordWriterBase<K, V, T> extends RecordWriter<K
   /** prefix of job configs that we care about */
   public static final String META_PREFIX = "trevni.meta.";
 
+  /**
+   * The size of output files, if not the filesystem block size. If set, blocks
+   * are buffered in a local temporary file rather than in memory, so files may be
+   * larger than a task's memory.
+   */
+  public static final String FILE_SIZE = "trevni.output.file.size";
+
+  /**
+   * The size of row groups, if each task writes a single file in row groups
+   * rather than a file per filesystem block. Only a row group is then buffered.
+   */
+  public static final String ROW_GROUP_SIZE = "trevni.output.row.group.size";
+
   /**
    * Counter that increments as new trevni files are create because the current
    * file has exceeded the block size
@@ -66,9 +79,18 @@ public abstract class AvroTrevniRecordWriterBase<K, V, T> extends RecordWriter<K
   /** HDFS object */
   final FileSystem fs;
 
-  /** Current configured blocksize */
+  /** Current configured blocksize, or file size if set */
   final long blockSize;
 
+  /** Whether blocks are spilled to a temporary file */
+  final boolean spill;
+
+  /** Configured row group size, or zero if not written in row groups */
+  final long rowGroupSize;
+
+  /** The file being written, if written in row groups */
+  private OutputStream out;
+
   /** Provided avro schema from the context */
   protected Schema schema;
 
@@ -85,7 +107,9 @@ public abstract class AvroTrevniRecordWriterBase<K, V, T> extends RecordWriter<K
 
     schema = initSchema(context);
     meta = filterMetadata(context.getConfiguration());
-    writer = new AvroColumnWriter<>(schema, meta, ReflectData.get());
+    long fileSize = context.getConfiguration().getLong(FILE_SIZE, 0);
+    spill = fileSize > 0;
+    rowGroupSize = context.getConfiguration().getLong(ROW_GROUP_SIZE, 0);
 
     Path outputPath = FileOutputFormat.getOutputPath(context);
 
@@ -94,7 +118,17 @@ public abstract class AvroTrevniRecordWriterBase<K, V, T> extends RecordWriter<K
     fs = dirPath.getFileSystem(context.getConfiguration());
     fs.mkdirs(dirPath);
 
-    blockSize = fs.getDefaultBlockSize(dirPath);
+    blockSize = rowGroupSize > 0 ? Long.MAX_VALUE : spill ? fileSize : fs.getDefaultBlockSize(dirPath);
+    writer = newWriter();
+  }
+
+  private AvroColumnWriter<T> newWriter() throws IOException {
+    if (rowGroupSize > 0) {
+      out = fs.create(new Path(dirPath, "part-" + (part++) + EXT));
+      return new AvroColumnWriter<>(schema, meta, ReflectData.get(), out, rowGroupSize);
+    }
+    return spill ? new AvroColumnWriter<>(schema, meta, ReflectData.get(), null)
+        : new AvroColumnWriter<>(schema, meta, ReflectData.get());
   }
 
   /**
@@ -110,16 +144,28 @@ public abstract class AvroTrevniRecordWriterBase<K, V, T> extends RecordWriter<K
    * @throws IOException
    */
   public void flush() throws IOException {
+    writeFile();
+    writer = newWriter();
+  }
+
+  private void writeFile() throws IOException {
+    if (rowGroupSize > 0) {
+      try (OutputStream out = this.out) {
+        writer.close(); // write the last row group
+      }
+      return;
+    }
     try (OutputStream out = fs.create(new Path(dirPath, "part-" + (part++) + EXT))) {
       writer.writeTo(out);
+    } finally {
+      writer.close();
     }
-    writer = new AvroColumnWriter<>(schema, meta, ReflectData.get());
   }
 
   /** {@inheritDoc} */
   @Override
   public void close(TaskAttemptContext arg0) throws IOException, InterruptedException {
-    flush();
+    writeFile();
   }
 
   static ColumnFileMetaData filterMetadata(final Configuration configuration) {
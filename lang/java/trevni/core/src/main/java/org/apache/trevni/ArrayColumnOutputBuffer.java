@@ -39,6 +39,8 @@ class ArrayColumnOutputBuffer extends ColumnOutputBuffer {
     assert this.length == 0;
     assert l >= 0;
     this.length = l;
+    if (l == 0)
+      addNull();
     if (l == runValue) {
       runLength++; // continue a run
       return;
@@ -58,6 +60,7 @@ class ArrayColumnOutputBuffer extends ColumnOutputBuffer {
     if (getMeta().getType() != ValueType.NULL) {
       flushRun();
       getBuffer().writeValue(value, getMeta().getType());
+      addStatistics(value);
     }
     length -= 1;
   }
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.trevni;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of decompressed and decoded blocks, bounded by their total size in
+ * bytes. May be shared by the {@link ColumnValues} of any number of files, set
+ * with {@link ColumnFileReader#setBlockCache(BlockCache)}, so that seeks to
+ * recently read blocks don't read them again. The least recently used blocks
+ * are evicted first.
+ */
+public class BlockCache {
+  private final long maxSize;
+  private final LinkedHashMap<Key, Block> blocks = new LinkedHashMap<>(16, 0.75f, true);
+  private long size;
+  private long hits;
+  private long misses;
+
+  /** Construct a cache holding up to {@code maxSize} bytes of blocks. */
+  public BlockCache(long maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /** Return the most bytes of blocks this holds. */
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /** Return the bytes of blocks this holds. */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /** Return the number of blocks found in this. */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /** Return the number of blocks not found in this. */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  synchronized Block get(Input file, long position) {
+    Block result = blocks.get(new Key(file, position));
+    if (result == null)
+      misses++;
+    else
+      hits++;
+    return result;
+  }
+
+  synchronized void put(Input file, long position, Block value) {
+    if (value.size > maxSize)
+      return;
+    Block old = blocks.put(new Key(file, position), value);
+    size += value.size - (old == null ? 0 : old.size);
+    for (Iterator<Block> i = blocks.values().iterator(); size > maxSize && i.hasNext();) {
+      size -= i.next().size; // evict least recently used
+      i.remove();
+    }
+  }
+
+  /** Remove the blocks of a file, once it's closed. */
+  synchronized void remove(Input file) {
+    for (Iterator<Map.Entry<Key, Block>> i = blocks.entrySet().iterator(); i.hasNext();) {
+      Map.Entry<Key, Block> entry = i.next();
+      if (entry.getKey().file == file) {
+        size -= entry.getValue().size;
+        i.remove();
+      }
+    }
+  }
+
+  /**
+   * Identifies a block by its position in its file, not its index, as readers of
+   * different row groups number the same blocks differently.
+   */
+  private static class Key {
+    private final Input file;
+    private final long position;
+
+    Key(Input file, long position) {
+      this.file = file;
+      this.position = position;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key))
+        return false;
+      Key that = (Key) o;
+      return file == that.file && position == that.position;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(file) * 31 + Long.hashCode(position);
+    }
+  }
+
+  /**
+   * A block read, decompressed and decoded. Holds either its plain data or the
+   * values decoded from it, which must not be modified.
+   */
+  static class Block {
+    final ByteBuffer data;
+    final Object decoded;
+    final long size;
+
+    Block(ByteBuffer data, Object decoded) {
+      this.data = decoded == null ? data : null;
+      this.decoded = decoded;
+      this.size = decoded == null ? data.remaining() : sizeOf(decoded);
+    }
+
+    private static long sizeOf(Object decoded) {
+      if (decoded instanceof int[])
+        return 4L * ((int[]) decoded).length;
+      if (decoded instanceof float[])
+        return 4L * ((float[]) decoded).length;
+      if (decoded instanceof long[])
+        return 8L * ((long[]) decoded).length;
+      if (decoded instanceof double[])
+        return 8L * ((double[]) decoded).length;
+      long size = 0;
+      for (String s : (String[]) decoded) // at most, as values may be shared
+        size += 48 + 2L * s.length();
+      return size;
+    }
+  }
+}
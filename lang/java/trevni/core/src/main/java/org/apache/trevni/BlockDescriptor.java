@@ -24,6 +24,12 @@ class BlockDescriptor {
   int uncompressedSize;
   int compressedSize;
 
+  // statistics, if the column has them
+  int valueCount;
+  int nullCount; // rows without values
+  Comparable min;
+  Comparable max;
+
   BlockDescriptor() {
   }
 
@@ -47,4 +53,13 @@ class BlockDescriptor {
     return result;
   }
 
+  void readStatistics(InputBuffer in, ValueType type) throws IOException {
+    valueCount = in.readInt();
+    nullCount = in.readInt();
+    if (valueCount > 0) {
+      min = in.readValue(type);
+      max = in.readValue(type);
+    }
+  }
+
 }
@@ -19,20 +19,45 @@ package org.apache.trevni;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
 
 /** Interface for compression codecs. */
 abstract class Codec {
 
+  // codecs keep buffers and native contexts, so are reused, but not shared
+  private static final ThreadLocal<Map<String, Codec>> CODECS = ThreadLocal.withInitial(HashMap::new);
+
+  /**
+   * Return a codec for the calling thread, reused by each block it compresses or
+   * decompresses. Must not be used by other threads.
+   */
   public static Codec get(MetaData meta) {
     String name = meta.getCodec();
+    Integer level = meta.getCodecLevel();
+    Map<String, Codec> codecs = CODECS.get();
+    String key = level == null ? name : name + "-" + level;
+    Codec codec = codecs.get(key);
+    if (codec == null) {
+      codec = create(name, level);
+      codecs.put(key, codec);
+    }
+    return codec;
+  }
+
+  private static Codec create(String name, Integer level) {
     if (name == null || "null".equals(name))
       return new NullCodec();
     else if ("deflate".equals(name))
-      return new DeflateCodec();
+      return new DeflateCodec(level == null ? DeflateCodec.DEFAULT_LEVEL : level);
     else if ("snappy".equals(name))
       return new SnappyCodec();
     else if ("bzip2".equals(name))
       return new BZip2Codec();
+    else if ("zstandard".equals(name))
+      return new ZstandardCodec(level == null ? ZstandardCodec.DEFAULT_LEVEL : level);
+    else if ("xz".equals(name))
+      return new XZCodec(level == null ? XZCodec.DEFAULT_LEVEL : level);
     else
       throw new TrevniRuntimeException("Unknown codec: " + name);
   }
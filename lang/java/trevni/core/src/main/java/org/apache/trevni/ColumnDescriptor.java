@@ -19,16 +19,18 @@ package org.apache.trevni;
 
 import java.io.IOException;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 class ColumnDescriptor<T extends Comparable> {
   final Input file;
   final ColumnMetaData metaData;
 
-  long start;
-  long dataStart;
+  long[] starts; // of the column in each row group read
+  BlockDescriptor[] chunks; // statistics of the column in each row group, if any
 
-  BlockDescriptor[] blocks;
+  BlockDescriptor[] blocks; // of all row groups read
 
   long[] blockStarts; // for random access
   long[] firstRows; // for binary searches
@@ -67,34 +69,44 @@ class ColumnDescriptor<T extends Comparable> {
     if (blocks != null)
       return;
 
-    // read block descriptors
-    InputBuffer in = new InputBuffer(file, start);
-    int blockCount = in.readFixed32();
-    BlockDescriptor[] blocks = new BlockDescriptor[blockCount];
-    if (metaData.hasIndexValues())
-      firstValues = (T[]) new Comparable[blockCount];
-
-    for (int i = 0; i < blockCount; i++) {
-      blocks[i] = BlockDescriptor.read(in);
-      if (metaData.hasIndexValues())
-        firstValues[i] = in.readValue(metaData.getType());
+    // read block descriptors of each row group
+    Checksum checksum = Checksum.get(metaData);
+    List<BlockDescriptor> blocks = new ArrayList<>();
+    List<Comparable> values = new ArrayList<>();
+    long[] blockStarts = new long[0];
+    for (long start : starts) {
+      InputBuffer in = new InputBuffer(file, start);
+      int first = blocks.size();
+      int blockCount = in.readFixed32();
+      for (int i = 0; i < blockCount; i++) {
+        BlockDescriptor b = BlockDescriptor.read(in);
+        if (metaData.hasIndexValues())
+          values.add(in.readValue(metaData.getType()));
+        if (metaData.hasStatistics())
+          b.readStatistics(in, metaData.getType());
+        blocks.add(b);
+      }
+
+      // compute blockStarts, as blocks follow their descriptors
+      blockStarts = Arrays.copyOf(blockStarts, blocks.size());
+      long startPosition = in.tell();
+      for (int i = first; i < blocks.size(); i++) {
+        blockStarts[i] = startPosition;
+        startPosition += blocks.get(i).compressedSize + checksum.size();
+      }
     }
-    dataStart = in.tell();
 
-    // compute blockStarts and firstRows
-    Checksum checksum = Checksum.get(metaData);
-    blockStarts = new long[blocks.length];
-    firstRows = new long[blocks.length];
-    long startPosition = dataStart;
+    // compute firstRows
+    firstRows = new long[blocks.size()];
     long row = 0;
-    for (int i = 0; i < blockCount; i++) {
-      BlockDescriptor b = blocks[i];
-      blockStarts[i] = startPosition;
+    for (int i = 0; i < blocks.size(); i++) {
       firstRows[i] = row;
-      startPosition += b.compressedSize + checksum.size();
-      row += b.rowCount;
+      row += blocks.get(i).rowCount;
     }
-    this.blocks = blocks;
+    if (metaData.hasIndexValues())
+      firstValues = (T[]) values.toArray(new Comparable[0]);
+    this.blockStarts = blockStarts;
+    this.blocks = blocks.toArray(new BlockDescriptor[0]);
   }
 
 }
@@ -35,6 +35,14 @@ public class ColumnFileReader implements Closeable {
   private ColumnFileMetaData metaData;
   private ColumnDescriptor[] columns;
   private Map<String, ColumnDescriptor> columnsByName;
+  private BlockCache cache;
+  private int bufferSize = InputBuffer.DEFAULT_BUFFER_SIZE;
+
+  private long[] groupRows; // row count of each row group
+  private long[][] groupStarts; // column starts of each row group
+  private BlockDescriptor[][] groupStatistics; // column statistics of each row group
+  private int firstGroup; // of the row groups read
+  private long firstRow; // of the row groups read, within the file
 
   /** Construct reading from the named file. */
   public ColumnFileReader(File file) throws IOException {
@@ -47,11 +55,88 @@ public class ColumnFileReader implements Closeable {
     readHeader();
   }
 
-  /** Return the number of rows in this file. */
+  /**
+   * Cache the blocks read by values created after this is called, so that other
+   * values may use them without reading them again.
+   */
+  public void setBlockCache(BlockCache cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Read up to this many bytes of a column at a time, for values created after
+   * this is called, so that consecutive blocks are read together. Larger sizes
+   * make fewer reads, which matters most for remote filesystems, but use this
+   * much memory for each column read. The default is 8192.
+   */
+  public void setBufferSize(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * Return the number of rows in this file, or in the row groups read, if
+   * {@link #setRowGroups(int, int)} was called.
+   */
   public long getRowCount() {
     return rowCount;
   }
 
+  /**
+   * Return the number of row groups in this file. Files not written in row groups
+   * have one.
+   */
+  public int getRowGroupCount() {
+    return groupRows.length;
+  }
+
+  /** Return the number of rows in a row group. */
+  public long getRowGroupRowCount(int group) {
+    return groupRows[group];
+  }
+
+  /**
+   * Return the position in this file where a row group starts, e.g., to assign
+   * row groups to splits of the file.
+   */
+  public long getRowGroupStart(int group) {
+    return columnCount == 0 ? 0 : groupStarts[group][0];
+  }
+
+  /**
+   * Return the row in this file of the first row read, i.e., of the first row
+   * group read.
+   */
+  public long getFirstRow() {
+    return firstRow;
+  }
+
+  /**
+   * Read only row groups from {@code start} to {@code end}, not included, as if
+   * the file contained only those. Must be called before any values are read.
+   */
+  public void setRowGroups(int start, int end) {
+    if (start < 0 || end > groupRows.length || start > end)
+      throw new TrevniRuntimeException("Invalid row groups: " + start + " to " + end);
+    this.firstGroup = start;
+    this.firstRow = 0;
+    for (int group = 0; group < start; group++)
+      firstRow += groupRows[group];
+    this.rowCount = 0;
+    for (int group = start; group < end; group++)
+      rowCount += groupRows[group];
+    for (int i = 0; i < columnCount; i++) {
+      ColumnDescriptor column = columns[i];
+      column.starts = new long[end - start];
+      column.chunks = column.metaData.hasStatistics() ? new BlockDescriptor[end - start] : null;
+      for (int group = start; group < end; group++) {
+        column.starts[group - start] = groupStarts[group][i];
+        if (column.chunks != null)
+          column.chunks[group - start] = groupStatistics[group][i];
+      }
+      column.blocks = null; // read again
+    }
+  }
+
   /** Return the number of columns in this file. */
   public long getColumnCount() {
     return columnCount;
@@ -96,29 +181,51 @@ public class ColumnFileReader implements Closeable {
     return (ColumnDescriptor<T>) column;
   }
 
+  /**
+   * Read only the row groups that start within a range of positions in this file,
+   * e.g., a split of it. Row groups are thus each read once when a file is read
+   * in splits that cover it. Must be called before any values are read.
+   */
+  public void setSplit(long start, long length) {
+    int first = 0;
+    while (first < groupRows.length && getRowGroupStart(first) < start)
+      first++;
+    int end = first;
+    while (end < groupRows.length && getRowGroupStart(end) < start + length)
+      end++;
+    setRowGroups(first, end);
+  }
+
   private void readHeader() throws IOException {
     InputBuffer in = new InputBuffer(file, 0);
-    readMagic(in);
-    this.rowCount = in.readFixed64();
+    byte[] magic = readMagic(in);
+    boolean inRowGroups = Arrays.equals(ColumnFileWriter.ROW_GROUP_MAGIC, magic);
+    if (!inRowGroups)
+      this.rowCount = in.readFixed64();
     this.columnCount = in.readFixed32();
     this.metaData = ColumnFileMetaData.read(in);
     this.columnsByName = new HashMap<>(columnCount);
 
     columns = new ColumnDescriptor[columnCount];
     readColumnMetaData(in);
-    readColumnStarts(in);
+    if (inRowGroups)
+      readFooter();
+    else
+      readColumnStarts(in);
+    setRowGroups(0, groupRows.length);
   }
 
-  private void readMagic(InputBuffer in) throws IOException {
+  private byte[] readMagic(InputBuffer in) throws IOException {
     byte[] magic = new byte[ColumnFileWriter.MAGIC.length];
     try {
       in.readFully(magic);
     } catch (IOException e) {
       throw new IOException("Not a data file.");
     }
-    if (!(Arrays.equals(ColumnFileWriter.MAGIC, magic) || !Arrays.equals(ColumnFileWriter.MAGIC_1, magic)
-        || !Arrays.equals(ColumnFileWriter.MAGIC_0, magic)))
+    if (!(Arrays.equals(ColumnFileWriter.ROW_GROUP_MAGIC, magic) || Arrays.equals(ColumnFileWriter.MAGIC, magic)
+        || Arrays.equals(ColumnFileWriter.MAGIC_1, magic) || Arrays.equals(ColumnFileWriter.MAGIC_0, magic)))
       throw new IOException("Not a data file.");
+    return magic;
   }
 
   private void readColumnMetaData(InputBuffer in) throws IOException {
@@ -133,22 +240,126 @@ public class ColumnFileReader implements Closeable {
   }
 
   private void readColumnStarts(InputBuffer in) throws IOException {
+    groupRows = new long[] { rowCount }; // a single row group
+    groupStarts = new long[1][columnCount];
+    groupStatistics = new BlockDescriptor[1][columnCount];
     for (int i = 0; i < columnCount; i++)
-      columns[i].start = in.readFixed64();
+      groupStarts[0][i] = in.readFixed64();
+  }
+
+  private void readFooter() throws IOException {
+    int trailer = 8 + ColumnFileWriter.ROW_GROUP_MAGIC.length; // footer start and magic
+    InputBuffer in = new InputBuffer(file, file.length() - trailer);
+    long footer = in.readFixed64();
+    if (!Arrays.equals(ColumnFileWriter.ROW_GROUP_MAGIC, readMagic(in)))
+      throw new IOException("Not a data file.");
+
+    in.seek(footer);
+    int groupCount = in.readFixed32();
+    groupRows = new long[groupCount];
+    groupStarts = new long[groupCount][columnCount];
+    groupStatistics = new BlockDescriptor[groupCount][columnCount];
+    for (int group = 0; group < groupCount; group++) {
+      groupRows[group] = in.readFixed64();
+      for (int i = 0; i < columnCount; i++)
+        groupStarts[group][i] = in.readFixed64();
+    }
+    for (int group = 0; group < groupCount; group++)
+      for (int i = 0; i < columnCount; i++)
+        if (columns[i].metaData.hasStatistics()) {
+          BlockDescriptor statistics = new BlockDescriptor();
+          statistics.readStatistics(in, columns[i].metaData.getType());
+          groupStatistics[group][i] = statistics;
+        }
   }
 
   /** Return an iterator over values in the named column. */
   public <T extends Comparable> ColumnValues<T> getValues(String columnName) throws IOException {
-    return new ColumnValues<>(getColumn(columnName));
+    return new ColumnValues<>(getColumn(columnName), cache, bufferSize);
   }
 
   /** Return an iterator over values in a column. */
   public <T extends Comparable> ColumnValues<T> getValues(int column) throws IOException {
-    return new ColumnValues<>(columns[column]);
+    return new ColumnValues<>(columns[column], cache, bufferSize);
+  }
+
+  /**
+   * Return the rows that may match all of a set of predicates, as sorted,
+   * disjoint ranges: start of the first range, end of the first range (not
+   * included), start of the second range, etc. Rows outside these ranges don't
+   * match. Rows within them may not match either, so should still be tested.
+   * Predicates on columns without statistics match all rows.
+   */
+  public long[] findRows(ColumnPredicate... predicates) throws IOException {
+    long[] rows = new long[] { 0, rowCount };
+    for (ColumnPredicate predicate : predicates) { // first by row group
+      ColumnDescriptor column = getColumn(predicate.getColumn());
+      if (column.chunks == null || column.chunks.length == 0 || column.chunks[0] == null)
+        continue; // no row group statistics
+      long[] matching = new long[column.chunks.length * 2];
+      int count = 0;
+      long start = 0;
+      for (int group = 0; group < column.chunks.length; group++) {
+        long end = start + groupRows[firstGroup + group];
+        if (predicate.mayMatch(column.chunks[group])) {
+          if (count > 0 && matching[count - 1] == start)
+            matching[count - 1] = end; // extend the previous range
+          else {
+            matching[count++] = start;
+            matching[count++] = end;
+          }
+        }
+        start = end;
+      }
+      rows = intersect(rows, rows.length, matching, count);
+    }
+    for (ColumnPredicate predicate : predicates) {
+      if (rows.length == 0)
+        break;
+      ColumnDescriptor column = getColumn(predicate.getColumn());
+      if (!column.metaData.hasStatistics())
+        continue;
+      column.ensureBlocksRead();
+      long[] matching = new long[column.blockCount() * 2];
+      int count = 0;
+      for (int block = 0; block < column.blockCount(); block++) {
+        if (!predicate.mayMatch(column.blocks[block]))
+          continue;
+        long start = column.firstRows[block];
+        if (count > 0 && matching[count - 1] == start)
+          matching[count - 1] = column.lastRow(block); // extend the previous range
+        else {
+          matching[count++] = start;
+          matching[count++] = column.lastRow(block);
+        }
+      }
+      rows = intersect(rows, rows.length, matching, count);
+    }
+    return rows;
+  }
+
+  private static long[] intersect(long[] a, int aLength, long[] b, int bLength) {
+    long[] result = new long[aLength + bLength];
+    int count = 0;
+    for (int i = 0, j = 0; i < aLength && j < bLength;) {
+      long start = Math.max(a[i], b[j]);
+      long end = Math.min(a[i + 1], b[j + 1]);
+      if (start < end) {
+        result[count++] = start;
+        result[count++] = end;
+      }
+      if (a[i + 1] < b[j + 1]) // advance the range that ends first
+        i += 2;
+      else
+        j += 2;
+    }
+    return Arrays.copyOf(result, count);
   }
 
   @Override
   public void close() throws IOException {
+    if (cache != null)
+      cache.remove(file);
     file.close();
   }
 
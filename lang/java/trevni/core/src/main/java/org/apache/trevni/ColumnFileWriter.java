@@ -17,22 +17,33 @@
  */
 package org.apache.trevni;
 
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.HashSet;
 
 /**
  * Writes data to a column file. All data is buffered until
- * {@link #writeTo(File)} is called.
+ * {@link #writeTo(File)} is called, in memory or, if constructed with a spill
+ * directory, in a temporary file, so that files larger than memory can be
+ * written. Alternately, if constructed with an output stream, rows are written
+ * to it in row groups as they are added.
  */
-public class ColumnFileWriter {
+public class ColumnFileWriter implements Closeable {
 
   static final byte[] MAGIC_0 = new byte[] { 'T', 'r', 'v', 0 };
   static final byte[] MAGIC_1 = new byte[] { 'T', 'r', 'v', 1 };
   static final byte[] MAGIC = new byte[] { 'T', 'r', 'v', 2 };
+  static final byte[] ROW_GROUP_MAGIC = new byte[] { 'T', 'r', 'v', 3 };
 
   private ColumnFileMetaData metaData;
   private ColumnOutputBuffer[] columns;
@@ -41,6 +52,17 @@ public class ColumnFileWriter {
   private int columnCount;
   private long size;
 
+  private FileChannel spill; // null if buffered in memory
+
+  private OutputStream out; // null unless written in row groups
+  private long rowGroupSize;
+  private long position; // in out
+  private long groupSize; // of the blocks completed in the row group
+  private long groupRowCount;
+  private List<Long> groupRows = new ArrayList<>();
+  private List<long[]> groupStarts = new ArrayList<>();
+  private List<byte[][]> groupStatistics = new ArrayList<>();
+
   /** Construct given metadata for each column in the file. */
   public ColumnFileWriter(ColumnFileMetaData fileMeta, ColumnMetaData... columnMeta) throws IOException {
     checkColumns(columnMeta);
@@ -48,13 +70,56 @@ public class ColumnFileWriter {
     this.columnCount = columnMeta.length;
     this.columns = new ColumnOutputBuffer[columnCount];
     for (int i = 0; i < columnCount; i++) {
-      ColumnMetaData c = columnMeta[i];
-      c.setDefaults(metaData);
-      columns[i] = c.isArray() ? new ArrayColumnOutputBuffer(this, c) : new ColumnOutputBuffer(this, c);
-      size += OutputBuffer.BLOCK_SIZE; // over-estimate
+      columnMeta[i].setDefaults(metaData);
+      columns[i] = newColumn(columnMeta[i]);
     }
   }
 
+  /**
+   * Construct given metadata for each column in the file, spilling each block to
+   * a temporary file in {@code spillDir} once it's complete, rather than keeping
+   * it in memory. Only the block descriptors and the block being written of each
+   * column are kept in memory. The temporary file is deleted by {@link #close()}.
+   *
+   * @param spillDir the directory of the temporary file, or null for the default
+   *                 temporary-file directory
+   */
+  public ColumnFileWriter(ColumnFileMetaData fileMeta, File spillDir, ColumnMetaData... columnMeta) throws IOException {
+    this(fileMeta, columnMeta);
+    File spillFile = File.createTempFile("trevni", ".spill", spillDir);
+    this.spill = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.DELETE_ON_CLOSE);
+  }
+
+  /**
+   * Construct given metadata for each column in the file, writing rows to a
+   * stream as they are added, in row groups of about {@code rowGroupSize} bytes.
+   * Only the row group being written is buffered. Readers may read row groups
+   * separately, e.g., in parallel. File metadata must be set before this is
+   * called. The last row group is written by {@link #close()}, which does not
+   * close the stream.
+   */
+  public ColumnFileWriter(ColumnFileMetaData fileMeta, OutputStream out, long rowGroupSize,
+      ColumnMetaData... columnMeta) throws IOException {
+    this(fileMeta, columnMeta);
+    this.out = out;
+    this.rowGroupSize = rowGroupSize;
+
+    OutputBuffer header = new OutputBuffer();
+    header.write(ROW_GROUP_MAGIC); // magic
+    header.writeFixed32(columnCount); // column count
+    metaData.write(header); // file metadata
+    for (ColumnOutputBuffer column : columns)
+      column.getMeta().write(header); // column metadata
+    position = header.size();
+    header.writeTo(out);
+  }
+
+  private ColumnOutputBuffer newColumn(ColumnMetaData c) throws IOException {
+    size += OutputBuffer.BLOCK_SIZE; // over-estimate
+    return c.isArray() ? new ArrayColumnOutputBuffer(this, c) : new ColumnOutputBuffer(this, c);
+  }
+
   private void checkColumns(ColumnMetaData[] columnMeta) {
     Set<String> seen = new HashSet<>();
     for (ColumnMetaData c : columnMeta) {
@@ -70,13 +135,37 @@ public class ColumnFileWriter {
 
   void incrementSize(int n) {
     size += n;
+    groupSize += n;
+  }
+
+  /** Return true if completed blocks are spilled rather than kept in memory. */
+  boolean isSpilling() {
+    return spill != null;
+  }
+
+  /** Append a block's data to the spill file, returning its position. */
+  long spill(ByteBuffer data) throws IOException {
+    long position = spill.size();
+    int start = data.position();
+    while (data.hasRemaining())
+      spill.write(data, position + data.position() - start);
+    return position;
+  }
+
+  /** Read spilled data at a position into the remainder of a buffer. */
+  void readSpilled(long position, ByteBuffer data) throws IOException {
+    int start = data.position();
+    while (data.hasRemaining())
+      if (spill.read(data, position + data.position() - start) < 0)
+        throw new EOFException("Truncated spill file");
   }
 
   /**
    * Return the approximate size of the file that will be written. Tries to
    * slightly over-estimate. Indicates both the size in memory of the buffered
-   * data as well as the size of the file that will be written by
-   * {@link #writeTo(OutputStream)}.
+   * data, unless blocks are spilled, as well as the size of the file that will be
+   * written by {@link #writeTo(OutputStream)}. When written in row groups, this
+   * is the size of the row group being written.
    */
   public long sizeEstimate() {
     return size;
@@ -129,6 +218,9 @@ public class ColumnFileWriter {
     for (int column = 0; column < columnCount; column++)
       columns[column].endRow();
     rowCount++;
+    groupRowCount++;
+    if (out != null && groupSize >= rowGroupSize)
+      writeRowGroup();
   }
 
   /** Write all rows added to the named file. */
@@ -140,12 +232,75 @@ public class ColumnFileWriter {
 
   /** Write all rows added to the named output stream. */
   public void writeTo(OutputStream out) throws IOException {
+    if (this.out != null)
+      throw new TrevniRuntimeException("Rows are written in row groups as added");
     writeHeader(out);
 
     for (int column = 0; column < columnCount; column++)
       columns[column].writeTo(out);
   }
 
+  /**
+   * Write the last row group and the footer, if written in row groups, and delete
+   * the spilled blocks, if any. The file can no longer be written.
+   */
+  @Override
+  public void close() throws IOException {
+    if (out != null) {
+      if (groupRowCount > 0)
+        writeRowGroup();
+      writeFooter();
+      out = null;
+    }
+    if (spill != null)
+      spill.close();
+  }
+
+  private void writeRowGroup() throws IOException {
+    long[] starts = new long[columnCount];
+    byte[][] statistics = new byte[columnCount][];
+    for (int column = 0; column < columnCount; column++) {
+      ColumnOutputBuffer buffer = columns[column];
+      starts[column] = position;
+      position += buffer.size();
+      buffer.writeTo(out);
+      statistics[column] = buffer.getStatistics();
+    }
+    groupRows.add(groupRowCount);
+    groupStarts.add(starts);
+    groupStatistics.add(statistics);
+
+    size = 0; // start the next row group
+    groupSize = 0;
+    for (int column = 0; column < columnCount; column++)
+      columns[column] = newColumn(columns[column].getMeta());
+    groupRowCount = 0;
+  }
+
+  private void writeFooter() throws IOException {
+    OutputBuffer footer = new OutputBuffer();
+
+    footer.writeFixed32(groupRows.size()); // row group count
+
+    for (int group = 0; group < groupRows.size(); group++) {
+      footer.writeFixed64(groupRows.get(group)); // row count
+      for (long start : groupStarts.get(group))
+        footer.writeFixed64(start); // column starts
+    }
+
+    for (byte[][] statistics : groupStatistics)
+      for (byte[] column : statistics)
+        if (column != null)
+          footer.write(column); // column statistics
+
+    footer.writeFixed64(position); // footer start
+
+    footer.write(ROW_GROUP_MAGIC); // magic
+
+    footer.writeTo(out);
+    out.flush();
+  }
+
   private void writeHeader(OutputStream out) throws IOException {
     OutputBuffer header = new OutputBuffer();
 
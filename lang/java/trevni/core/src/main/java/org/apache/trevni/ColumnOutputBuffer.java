@@ -19,6 +19,7 @@ package org.apache.trevni;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -26,25 +27,40 @@ import java.util.List;
 class ColumnOutputBuffer {
   private ColumnFileWriter writer;
   private ColumnMetaData meta;
-  private Codec codec;
   private Checksum checksum;
   private OutputBuffer buffer;
   private List<BlockDescriptor> blockDescriptors;
   private List<byte[]> blockData;
+  private List<Long> blockPositions; // of blocks spilled by the writer
+  private List<Object> blockValues; // of the current block, if encoded
   private List<byte[]> firstValues;
+  private List<byte[]> statistics;
   private int rowCount;
+  private int valueCount; // statistics of the current block
+  private int nullCount;
+  private Comparable min;
+  private Comparable max;
+  private int chunkValueCount; // statistics of all blocks
+  private int chunkNullCount;
+  private Comparable chunkMin;
+  private Comparable chunkMax;
   private long size = 4; // room for block count
 
   public ColumnOutputBuffer(ColumnFileWriter writer, ColumnMetaData meta) throws IOException {
     this.writer = writer;
     this.meta = meta;
-    this.codec = Codec.get(meta);
+    Codec.get(meta); // fail early if unknown
     this.checksum = Checksum.get(meta);
     this.buffer = new OutputBuffer();
     this.blockDescriptors = new ArrayList<>();
     this.blockData = new ArrayList<>();
+    this.blockPositions = new ArrayList<>();
     if (meta.hasIndexValues())
       this.firstValues = new ArrayList<>();
+    if (meta.hasStatistics())
+      this.statistics = new ArrayList<>();
+    if (Encoding.isEncoded(meta))
+      this.blockValues = new ArrayList<>();
   }
 
   public ColumnMetaData getMeta() {
@@ -66,10 +82,42 @@ class ColumnOutputBuffer {
 
   public void writeValue(Object value) throws IOException {
     buffer.writeValue(value, meta.getType());
+    if (blockValues != null)
+      blockValues.add(value);
+    addStatistics(value);
     if (meta.hasIndexValues() && rowCount == 0)
       firstValues.add(buffer.toByteArray());
   }
 
+  /** Add a value to the statistics of the current block. */
+  void addStatistics(Object value) {
+    if (statistics == null || meta.getType() == ValueType.NULL)
+      return;
+    Comparable c;
+    if (value instanceof byte[])
+      c = ByteBuffer.wrap(((byte[]) value).clone());
+    else if (value instanceof ByteBuffer)
+      c = ByteBuffer.wrap(toBytes((ByteBuffer) value));
+    else
+      c = (Comparable) value;
+    if (valueCount == 0 || c.compareTo(min) < 0)
+      min = c;
+    if (valueCount == 0 || c.compareTo(max) > 0)
+      max = c;
+    valueCount++;
+  }
+
+  private static byte[] toBytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  /** Count a row without values in the statistics of the current block. */
+  void addNull() {
+    nullCount++;
+  }
+
   public void endRow() throws IOException {
     rowCount++;
   }
@@ -77,29 +125,72 @@ class ColumnOutputBuffer {
   void flushBuffer() throws IOException {
     if (rowCount == 0)
       return;
-    ByteBuffer raw = buffer.asByteBuffer();
-    ByteBuffer c = codec.compress(raw);
+    ByteBuffer raw = blockValues != null ? Encoding.encode(blockValues, meta.getType(), buffer) : buffer.asByteBuffer();
+    ByteBuffer c = Codec.get(meta).compress(raw);
 
     blockDescriptors.add(new BlockDescriptor(rowCount, raw.remaining(), c.remaining()));
 
     ByteBuffer data = ByteBuffer.allocate(c.remaining() + checksum.size());
     data.put(c);
     data.put(checksum.compute(raw));
-    blockData.add(data.array());
+
+    if (statistics != null) {
+      statistics.add(toStatistics(valueCount, nullCount, min, max));
+      if (valueCount > 0 && (chunkValueCount == 0 || min.compareTo(chunkMin) < 0))
+        chunkMin = min;
+      if (valueCount > 0 && (chunkValueCount == 0 || max.compareTo(chunkMax) > 0))
+        chunkMax = max;
+      chunkValueCount += valueCount;
+      chunkNullCount += nullCount;
+      valueCount = 0;
+      nullCount = 0;
+      min = null;
+      max = null;
+    }
 
     int sizeIncrement = (4 * 3) // descriptor
         + (firstValues != null // firstValue
             ? firstValues.get(firstValues.size() - 1).length
             : 0)
+        + (statistics != null // statistics
+            ? statistics.get(statistics.size() - 1).length
+            : 0)
         + data.position(); // data
 
+    if (writer.isSpilling()) {
+      ((Buffer) data).flip();
+      blockPositions.add(writer.spill(data));
+    } else {
+      blockData.add(data.array());
+    }
+
     writer.incrementSize(sizeIncrement);
     size += sizeIncrement;
 
     buffer = new OutputBuffer();
+    if (blockValues != null)
+      blockValues.clear();
     rowCount = 0;
   }
 
+  private byte[] toStatistics(int valueCount, int nullCount, Comparable min, Comparable max) throws IOException {
+    OutputBuffer stats = new OutputBuffer();
+    stats.writeInt(valueCount);
+    stats.writeInt(nullCount);
+    if (valueCount > 0) {
+      stats.writeValue(min, meta.getType());
+      stats.writeValue(max, meta.getType());
+    }
+    return stats.toByteArray();
+  }
+
+  /** Return the statistics of all blocks flushed, or null if none are kept. */
+  byte[] getStatistics() throws IOException {
+    if (statistics == null)
+      return null;
+    return toStatistics(chunkValueCount, chunkNullCount, chunkMin, chunkMax);
+  }
+
   public long size() throws IOException {
     flushBuffer();
     return size;
@@ -112,11 +203,25 @@ class ColumnOutputBuffer {
       blockDescriptors.get(i).writeTo(header);
       if (meta.hasIndexValues())
         header.write(firstValues.get(i));
+      if (statistics != null)
+        header.write(statistics.get(i));
     }
     header.writeTo(out);
 
     for (byte[] data : blockData)
       out.write(data);
+
+    ByteBuffer data = null;
+    for (int i = 0; i < blockPositions.size(); i++) {
+      BlockDescriptor block = blockDescriptors.get(i);
+      int length = block.compressedSize + checksum.size();
+      if (data == null || data.capacity() < length)
+        data = ByteBuffer.allocate(Math.max(length, OutputBuffer.BLOCK_SIZE));
+      ((Buffer) data).clear();
+      ((Buffer) data).limit(length);
+      writer.readSpilled(blockPositions.get(i), data);
+      out.write(data.array(), 0, length);
+    }
   }
 
 }
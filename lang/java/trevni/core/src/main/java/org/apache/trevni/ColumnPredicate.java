@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.trevni;
+
+import java.util.Arrays;
+
+/**
+ * A condition on the values of a column, used with
+ * {@link ColumnFileReader#findRows(ColumnPredicate...)} to skip blocks whose
+ * {@link MetaData#hasStatistics() statistics} show that none of their values
+ * match. Values must be of the column's type, e.g., Integer for int columns and
+ * ByteBuffer for bytes columns.
+ * <p>
+ * For array columns, a row matches if any of its values match.
+ */
+public abstract class ColumnPredicate {
+  private final String column;
+
+  private ColumnPredicate(String column) {
+    this.column = column;
+  }
+
+  /** Return the name of the column this tests. */
+  public String getColumn() {
+    return column;
+  }
+
+  /** Return false if no value in a block can match. */
+  boolean mayMatch(BlockDescriptor block) {
+    return block.valueCount > 0 && mayMatch(block.min, block.max);
+  }
+
+  /** Return false if no value from min to max, inclusive, can match. */
+  abstract boolean mayMatch(Comparable min, Comparable max);
+
+  /** Match values equal to a value. */
+  public static ColumnPredicate eq(String column, Comparable value) {
+    return new ColumnPredicate(column) {
+      @Override
+      boolean mayMatch(Comparable min, Comparable max) {
+        return min.compareTo(value) <= 0 && max.compareTo(value) >= 0;
+      }
+
+      @Override
+      public String toString() {
+        return column + " = " + value;
+      }
+    };
+  }
+
+  /** Match values less than a value. */
+  public static ColumnPredicate lt(String column, Comparable value) {
+    return new ColumnPredicate(column) {
+      @Override
+      boolean mayMatch(Comparable min, Comparable max) {
+        return min.compareTo(value) < 0;
+      }
+
+      @Override
+      public String toString() {
+        return column + " < " + value;
+      }
+    };
+  }
+
+  /** Match values greater than a value. */
+  public static ColumnPredicate gt(String column, Comparable value) {
+    return new ColumnPredicate(column) {
+      @Override
+      boolean mayMatch(Comparable min, Comparable max) {
+        return max.compareTo(value) > 0;
+      }
+
+      @Override
+      public String toString() {
+        return column + " > " + value;
+      }
+    };
+  }
+
+  /** Match values from low to high, inclusive. */
+  public static ColumnPredicate between(String column, Comparable low, Comparable high) {
+    return new ColumnPredicate(column) {
+      @Override
+      boolean mayMatch(Comparable min, Comparable max) {
+        return max.compareTo(low) >= 0 && min.compareTo(high) <= 0;
+      }
+
+      @Override
+      public String toString() {
+        return low + " <= " + column + " <= " + high;
+      }
+    };
+  }
+
+  /** Match values equal to any of a set of values. */
+  public static ColumnPredicate in(String column, Comparable... values) {
+    Comparable[] sorted = values.clone();
+    Arrays.sort(sorted);
+    return new ColumnPredicate(column) {
+      @Override
+      boolean mayMatch(Comparable min, Comparable max) {
+        int i = Arrays.binarySearch(sorted, min); // the first value not below min
+        if (i >= 0)
+          return true;
+        i = -i - 1;
+        return i < sorted.length && sorted[i].compareTo(max) <= 0;
+      }
+
+      @Override
+      public String toString() {
+        return column + " in " + Arrays.toString(sorted);
+      }
+    };
+  }
+
+  /** Match rows without values, i.e., empty arrays and null unions. */
+  public static ColumnPredicate isNull(String column) {
+    return new ColumnPredicate(column) {
+      @Override
+      boolean mayMatch(BlockDescriptor block) {
+        return block.nullCount > 0;
+      }
+
+      @Override
+      boolean mayMatch(Comparable min, Comparable max) {
+        return true;
+      }
+
+      @Override
+      public String toString() {
+        return column + " is null";
+      }
+    };
+  }
+}
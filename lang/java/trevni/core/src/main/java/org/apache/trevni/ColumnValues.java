@@ -18,46 +18,124 @@
 package org.apache.trevni;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /** An iterator over column values. */
 public class ColumnValues<T extends Comparable> implements Iterator<T>, Iterable<T> {
 
   private final ColumnDescriptor column;
   private final ValueType type;
-  private final Codec codec;
   private final Checksum checksum;
   private final InputBuffer in;
+  private final int bufferSize;
+  private final boolean encoded;
 
+  private final BlockCache cache;
+  private byte[] raw; // reused to read blocks
+  private BlockCache.Block current;
   private InputBuffer values;
+  private Object decoded; // values of a block not encoded plainly
   private int block = -1;
   private long row = 0;
   private T previous;
 
   private int arrayLength;
 
-  ColumnValues(ColumnDescriptor column) throws IOException {
+  // blocks loaded in the background, in order, with their own input
+  private Executor prefetch;
+  private int readAhead;
+  private InputBuffer prefetchIn;
+  private Checksum prefetchChecksum;
+  private final ArrayDeque<CompletableFuture<BlockCache.Block>> ahead = new ArrayDeque<>();
+  private int aheadStart; // the block of the first in ahead
+  private CompletableFuture<?> lastLoad = CompletableFuture.completedFuture(null);
+  private final Object loads = new Object(); // guards running and stopped
+  private int running; // loads in progress in the background
+  private boolean stopped; // whether background loads are skipped
+
+  ColumnValues(ColumnDescriptor column, BlockCache cache, int bufferSize) throws IOException {
     this.column = column;
+    this.cache = cache;
+    this.bufferSize = bufferSize;
     this.type = column.metaData.getType();
-    this.codec = Codec.get(column.metaData);
     this.checksum = Checksum.get(column.metaData);
-    this.in = new InputBuffer(column.file);
+    this.in = new InputBuffer(column.file, 0, bufferSize);
+    this.encoded = Encoding.isEncoded(column.metaData);
 
     column.ensureBlocksRead();
   }
 
+  /**
+   * Expert: Read, decompress and decode up to {@code readAhead} blocks following
+   * the current one in the background, on an executor. Blocks of a column are
+   * loaded one at a time, in order, so that the blocks of different columns are
+   * loaded in parallel.
+   */
+  public void setPrefetch(Executor executor, int readAhead) throws IOException {
+    if (prefetchIn == null) {
+      this.prefetchIn = new InputBuffer(column.file, 0, bufferSize);
+      this.prefetchChecksum = Checksum.get(column.metaData);
+    }
+    this.prefetch = readAhead > 0 ? executor : null;
+    this.readAhead = readAhead;
+    ahead.clear();
+    synchronized (loads) {
+      stopped = false;
+    }
+  }
+
+  /**
+   * Expert: Stop reading ahead. Skips the blocks not yet being loaded in the
+   * background and waits for those that are, so that the input may then be
+   * closed.
+   */
+  public void stopPrefetch() throws IOException {
+    prefetch = null;
+    ahead.clear();
+    synchronized (loads) {
+      stopped = true;
+      while (running > 0) {
+        try {
+          loads.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted waiting for blocks being loaded");
+        }
+      }
+    }
+  }
+
   /** Return the current row number within this file. */
   public long getRow() {
     return row;
   }
 
-  /** Seek to the named row. */
+  /**
+   * Seek to the named row. Must be called between rows. Array columns are only
+   * supported if they have no children.
+   */
   public void seek(long r) throws IOException {
     if (r < row || r >= column.lastRow(block)) // not in current block
       startBlock(column.findBlock(r)); // seek to block start
+    if (decoded != null && r > row) { // skip within decoded block
+      row = Math.min(r, column.lastRow(block));
+    }
+    boolean isArray = column.metaData.isArray();
     while (r > row && hasNext()) { // skip within block
-      values.skipValue(type);
+      if (isArray)
+        for (int length = values.readLength(); length > 0; length--)
+          values.skipValue(type);
+      else
+        values.skipValue(type);
       row++;
     }
     previous = null;
@@ -74,10 +152,11 @@ public class ColumnValues<T extends Comparable> implements Iterator<T>, Iterable
       startBlock(column.findBlock(v)); // seek to block start
 
     while (hasNext()) { // scan block
-      long savedPosition = values.tell();
+      long savedPosition = decoded == null ? values.tell() : 0;
       T savedPrevious = previous;
       if (next().compareTo(v) >= 0) {
-        values.seek(savedPosition);
+        if (decoded == null)
+          values.seek(savedPosition);
         previous = savedPrevious;
         row--;
         return;
@@ -86,17 +165,110 @@ public class ColumnValues<T extends Comparable> implements Iterator<T>, Iterable
   }
 
   private void startBlock(int block) throws IOException {
+    BlockCache.Block loaded = block == this.block ? current : null; // restart
+    if (prefetch != null) {
+      for (; !ahead.isEmpty() && aheadStart <= block; aheadStart++) { // passed
+        CompletableFuture<BlockCache.Block> next = ahead.poll();
+        if (aheadStart == block && loaded == null)
+          loaded = join(next);
+      }
+      if (aheadStart != block + 1) // not loading the following blocks
+        ahead.clear();
+    }
+    if (loaded == null)
+      loaded = load(block, in, checksum, true);
+
     this.block = block;
     this.row = column.firstRows[block];
+    this.current = loaded;
+    this.decoded = loaded.decoded;
+    if (loaded.data != null) {
+      if (values == null)
+        values = new InputBuffer(new InputBytes(loaded.data));
+      else
+        values.reset(new InputBytes(loaded.data));
+      if (encoded)
+        values.read(); // skip the plain encoding
+    }
 
-    in.seek(column.blockStarts[block]);
+    if (prefetch != null)
+      loadAhead(block);
+  }
+
+  /**
+   * Read, decompress and decode a block, unless cached. Only reuses the buffer it
+   * reads into if the result is no longer needed once the next block's read.
+   */
+  private BlockCache.Block load(int block, InputBuffer in, Checksum checksum, boolean reuse) throws IOException {
+    long position = column.blockStarts[block];
+    BlockCache.Block cached = cache == null ? null : cache.get(column.file, position);
+    if (cached != null)
+      return cached;
+
+    in.seek(position);
     int end = column.blocks[block].compressedSize;
-    byte[] raw = new byte[end + checksum.size()];
-    in.readFully(raw);
-    ByteBuffer data = codec.decompress(ByteBuffer.wrap(raw, 0, end));
+    int length = end + checksum.size();
+    byte[] raw = reuse && this.raw != null && this.raw.length >= length ? this.raw : new byte[length];
+    if (reuse)
+      this.raw = raw;
+    in.readFully(raw, 0, length);
+    ByteBuffer data = Codec.get(column.metaData).decompress(ByteBuffer.wrap(raw, 0, end));
     if (!checksum.compute(data).equals(ByteBuffer.wrap(raw, end, checksum.size())))
       throw new IOException("Checksums mismatch.");
-    values = new InputBuffer(new InputBytes(data));
+    Object decoded = null;
+    if (encoded)
+      decoded = Encoding.decode(new InputBuffer(new InputBytes(data)), type, column.blocks[block].rowCount);
+    if (decoded == null && reuse && cache != null && data.array() == raw) // not decompressed
+      data = ByteBuffer.wrap(Arrays.copyOf(raw, end));
+
+    BlockCache.Block loaded = new BlockCache.Block(data, decoded);
+    if (cache != null)
+      cache.put(column.file, position, loaded);
+    return loaded;
+  }
+
+  /** Queue loads of the blocks following the current one. */
+  private void loadAhead(int block) {
+    if (ahead.isEmpty())
+      aheadStart = block + 1;
+    for (int next = aheadStart + ahead.size(); ahead.size() < readAhead && next < column.blockCount(); next++) {
+      int b = next;
+      try {
+        lastLoad = lastLoad.handle((result, error) -> null).thenApplyAsync(ignore -> {
+          synchronized (loads) {
+            if (stopped)
+              return null; // no longer needed
+            running++;
+          }
+          try {
+            return load(b, prefetchIn, prefetchChecksum, false);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          } finally {
+            synchronized (loads) {
+              running--;
+              loads.notifyAll();
+            }
+          }
+        }, prefetch);
+      } catch (RejectedExecutionException e) { // executor shut down
+        prefetch = null;
+        return;
+      }
+      ahead.add((CompletableFuture<BlockCache.Block>) lastLoad);
+    }
+  }
+
+  private static BlockCache.Block join(CompletableFuture<BlockCache.Block> future) throws IOException {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof UncheckedIOException)
+        throw ((UncheckedIOException) e.getCause()).getCause();
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw e;
+    }
   }
 
   @Override
@@ -145,9 +317,133 @@ public class ColumnValues<T extends Comparable> implements Iterator<T>, Iterable
   /** Expert: Returns the next value in a column. */
   public T nextValue() throws IOException {
     arrayLength--;
+    if (decoded != null)
+      return previous = (T) Encoding.get(decoded, (int) (row - 1 - column.firstRows[block]));
     return previous = values.readValue(type);
   }
 
+  /**
+   * Read up to {@code max} values of an int or fixed32 column into an array,
+   * decoding each block in a single loop, without boxing. Returns the number of
+   * values read, which is less than {@code max} only at the end of the column.
+   */
+  public int readInts(int[] dst, int max) throws IOException {
+    checkBatch(ValueType.INT, ValueType.FIXED32);
+    int count = 0;
+    for (int n; count < max && (n = startBatch(max - count)) > 0; count += n) {
+      if (decoded != null)
+        System.arraycopy(decoded, blockIndex(), dst, count, n);
+      else
+        Encoding.readValues(values, type, dst, count, n);
+      row += n;
+    }
+    return count;
+  }
+
+  /**
+   * Read up to {@code max} values of an integer column into an array, decoding
+   * each block in a single loop, without boxing. Returns the number of values
+   * read, which is less than {@code max} only at the end of the column.
+   */
+  public int readLongs(long[] dst, int max) throws IOException {
+    checkBatch(ValueType.INT, ValueType.FIXED32, ValueType.LONG, ValueType.FIXED64);
+    boolean isInt = type == ValueType.INT || type == ValueType.FIXED32;
+    int[] ints = null;
+    int count = 0;
+    for (int n; count < max && (n = startBatch(max - count)) > 0; count += n) {
+      if (decoded != null && !isInt) {
+        System.arraycopy(decoded, blockIndex(), dst, count, n);
+      } else if (decoded != null) {
+        int[] from = (int[]) decoded;
+        for (int i = 0, j = blockIndex(); i < n; i++, j++)
+          dst[count + i] = from[j];
+      } else if (!isInt) {
+        Encoding.readValues(values, type, dst, count, n);
+      } else {
+        if (ints == null || ints.length < n)
+          ints = new int[n];
+        Encoding.readValues(values, type, ints, 0, n);
+        for (int i = 0; i < n; i++)
+          dst[count + i] = ints[i];
+      }
+      row += n;
+    }
+    return count;
+  }
+
+  /**
+   * Read up to {@code max} values of a float or double column into an array,
+   * decoding each block in a single loop, without boxing. Returns the number of
+   * values read, which is less than {@code max} only at the end of the column.
+   */
+  public int readDoubles(double[] dst, int max) throws IOException {
+    checkBatch(ValueType.FLOAT, ValueType.DOUBLE);
+    int count = 0;
+    for (int n; count < max && (n = startBatch(max - count)) > 0; count += n) {
+      if (type == ValueType.DOUBLE) {
+        if (decoded != null)
+          System.arraycopy(decoded, blockIndex(), dst, count, n);
+        else
+          Encoding.readValues(values, type, dst, count, n);
+      } else if (decoded != null) {
+        float[] from = (float[]) decoded;
+        for (int i = 0, j = blockIndex(); i < n; i++, j++)
+          dst[count + i] = from[j];
+      } else {
+        for (int i = 0; i < n; i++)
+          dst[count + i] = values.readFloat();
+      }
+      row += n;
+    }
+    return count;
+  }
+
+  /**
+   * Read up to {@code max} values of a string column into an array. Returns the
+   * number of values read, which is less than {@code max} only at the end of the
+   * column.
+   */
+  public int readStrings(String[] dst, int max) throws IOException {
+    checkBatch(ValueType.STRING);
+    int count = 0;
+    for (int n; count < max && (n = startBatch(max - count)) > 0; count += n) {
+      if (decoded != null)
+        System.arraycopy(decoded, blockIndex(), dst, count, n);
+      else
+        Encoding.readValues(values, type, dst, count, n);
+      row += n;
+    }
+    return count;
+  }
+
+  private void checkBatch(ValueType... types) {
+    if (column.metaData.isArray() || column.metaData.getParent() != null)
+      throw new TrevniRuntimeException("Column is array: " + column.metaData.getName());
+    for (ValueType t : types)
+      if (t == type) {
+        previous = null;
+        return;
+      }
+    throw new TrevniRuntimeException("Column is " + type.getName() + ": " + column.metaData.getName());
+  }
+
+  /**
+   * Start the next block if the current one is done, and return the number of
+   * values, up to max, that can be read from it, or 0 at the end of the column.
+   */
+  private int startBatch(int max) throws IOException {
+    if (!hasNext())
+      return 0;
+    if (row >= column.lastRow(block))
+      startBlock(block + 1);
+    return (int) Math.min(max, column.lastRow(block) - row);
+  }
+
+  /** The index within the current block of the next row. */
+  private int blockIndex() {
+    return (int) (row - column.firstRows[block]);
+  }
+
   @Override
   public void remove() {
     throw new UnsupportedOperationException();
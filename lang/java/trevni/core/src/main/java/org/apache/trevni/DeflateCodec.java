@@ -28,10 +28,17 @@ import java.util.zip.InflaterOutputStream;
 
 /** Implements DEFLATE (RFC1951) compression and decompression. */
 class DeflateCodec extends Codec {
+  static final int DEFAULT_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+  private final int level;
   private ByteArrayOutputStream outputBuffer;
   private Deflater deflater;
   private Inflater inflater;
 
+  DeflateCodec(int level) {
+    this.level = level;
+  }
+
   @Override
   ByteBuffer compress(ByteBuffer data) throws IOException {
     ByteArrayOutputStream baos = getOutputBuffer(data.remaining());
@@ -59,7 +66,7 @@ class DeflateCodec extends Codec {
 
   private Deflater getDeflater() {
     if (null == deflater)
-      deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+      deflater = new Deflater(level, true);
     deflater.reset();
     return deflater;
   }
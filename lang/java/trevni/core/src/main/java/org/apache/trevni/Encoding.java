@@ -0,0 +1,436 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.trevni;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodings of the values in a block. When a column's encoding is "auto", each
+ * block starts with a byte naming its encoding, chosen by the writer from
+ * statistics of the block's values:
+ * <ul>
+ * <li>plain: values are serialized by type, as in other columns.</li>
+ * <li>dictionary: the distinct values, then each row's index into them,
+ * bit-packed.</li>
+ * <li>run-length: runs of equal values, as a length and a value.</li>
+ * <li>delta: for integer types, the first value, the least difference between
+ * consecutive values, then each difference less that, bit-packed.</li>
+ * </ul>
+ */
+class Encoding {
+  static final String AUTO = "auto";
+  static final String PLAIN_NAME = "plain";
+
+  static final int PLAIN = 0;
+  static final int DICTIONARY = 1;
+  static final int RUN_LENGTH = 2;
+  static final int DELTA = 3;
+
+  private static final int MAX_DICTIONARY = 1 << 16;
+
+  private Encoding() {
+  }
+
+  /** Return true if a column's blocks start with their encoding. */
+  static boolean isEncoded(ColumnMetaData meta) {
+    String name = meta.getEncoding();
+    if (name == null || PLAIN_NAME.equals(name))
+      return false;
+    if (!AUTO.equals(name))
+      throw new TrevniRuntimeException("Unknown encoding: " + name);
+    if (meta.isArray() || meta.getParent() != null)
+      return false; // lengths are interleaved with values
+    switch (meta.getType()) {
+    case INT:
+    case LONG:
+    case FIXED32:
+    case FIXED64:
+    case FLOAT:
+    case DOUBLE:
+    case STRING:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  private static boolean isInteger(ValueType type) {
+    return type == ValueType.INT || type == ValueType.LONG || type == ValueType.FIXED32 || type == ValueType.FIXED64;
+  }
+
+  /** The number of bits needed for an unsigned value. */
+  static int bitWidth(long value) {
+    return 64 - Long.numberOfLeadingZeros(value);
+  }
+
+  /**
+   * Encode a block's values, given their plain serialization, with the encoding
+   * estimated to be smallest.
+   */
+  static ByteBuffer encode(List<Object> values, ValueType type, OutputBuffer plain) throws IOException {
+    int rows = values.size();
+    int plainSize = plain.size();
+    double average = (double) plainSize / rows;
+
+    // gather statistics in a single pass
+    Map<Object, Integer> dictionary = new HashMap<>();
+    boolean integer = isInteger(type);
+    int runs = 0;
+    long minDelta = Long.MAX_VALUE;
+    long maxDelta = Long.MIN_VALUE;
+    Object previous = null;
+    for (Object value : values) {
+      if (dictionary != null) {
+        dictionary.putIfAbsent(value, dictionary.size());
+        if (dictionary.size() > MAX_DICTIONARY)
+          dictionary = null;
+      }
+      if (!value.equals(previous))
+        runs++;
+      if (integer && previous != null) {
+        long delta = ((Number) value).longValue() - ((Number) previous).longValue();
+        minDelta = Math.min(minDelta, delta);
+        maxDelta = Math.max(maxDelta, delta);
+      }
+      previous = value;
+    }
+
+    // estimate the size of each encoding
+    int encoding = PLAIN;
+    long best = plainSize;
+    if (dictionary != null) {
+      int width = bitWidth(dictionary.size() - 1);
+      long size = (long) (dictionary.size() * average) + ((long) rows * width + 7) / 8 + 6;
+      if (size < best) {
+        best = size;
+        encoding = DICTIONARY;
+      }
+    }
+    long runSize = (long) (runs * (average + 2));
+    if (runSize < best) {
+      best = runSize;
+      encoding = RUN_LENGTH;
+    }
+    if (integer && rows > 1) {
+      int width = bitWidth(maxDelta - minDelta);
+      long size = ((long) (rows - 1) * width + 7) / 8 + 21;
+      if (size < best) {
+        encoding = DELTA;
+      }
+    }
+
+    OutputBuffer out = new OutputBuffer();
+    out.write(encoding);
+    switch (encoding) {
+    case DICTIONARY:
+      Object[] entries = new Object[dictionary.size()];
+      for (Map.Entry<Object, Integer> e : dictionary.entrySet())
+        entries[e.getValue()] = e.getKey();
+      out.writeInt(entries.length);
+      for (Object entry : entries)
+        out.writeValue(entry, type);
+      int width = bitWidth(entries.length - 1);
+      out.write(width);
+      BitWriter indexes = new BitWriter(out);
+      for (Object value : values)
+        indexes.write(dictionary.get(value), width);
+      indexes.flush();
+      break;
+    case RUN_LENGTH:
+      int length = 0;
+      previous = values.get(0);
+      for (Object value : values) {
+        if (!value.equals(previous)) {
+          out.writeInt(length);
+          out.writeValue(previous, type);
+          length = 0;
+          previous = value;
+        }
+        length++;
+      }
+      out.writeInt(length);
+      out.writeValue(previous, type);
+      break;
+    case DELTA:
+      long last = ((Number) values.get(0)).longValue();
+      int deltaWidth = bitWidth(maxDelta - minDelta);
+      out.writeLong(last);
+      out.writeLong(minDelta);
+      out.write(deltaWidth);
+      BitWriter deltas = new BitWriter(out);
+      for (int i = 1; i < rows; i++) {
+        long value = ((Number) values.get(i)).longValue();
+        deltas.write(value - last - minDelta, deltaWidth);
+        last = value;
+      }
+      deltas.flush();
+      break;
+    default:
+      break;
+    }
+    if (encoding == PLAIN || out.size() > plainSize) { // estimate was wrong
+      out.reset();
+      out.write(PLAIN);
+      plain.writeTo(out);
+    }
+    return out.asByteBuffer();
+  }
+
+  /**
+   * Read a block's encoding. Returns null for plain blocks, leaving the values to
+   * be read from the input, else the decoded values, in an array of the type's
+   * {@link #newArray(ValueType, int) primitive representation}.
+   */
+  static Object decode(InputBuffer in, ValueType type, int rows) throws IOException {
+    int encoding = in.read();
+    switch (encoding) {
+    case PLAIN:
+      return null;
+    case DICTIONARY:
+      int size = in.readInt();
+      Object dictionary = newArray(type, size);
+      readValues(in, type, dictionary, 0, size);
+      int width = in.read();
+      int[] indexes = new int[rows];
+      BitReader indexReader = new BitReader(in);
+      for (int i = 0; i < rows; i++)
+        indexes[i] = (int) indexReader.read(width);
+      return gather(type, dictionary, indexes);
+    case RUN_LENGTH:
+      Object values = newArray(type, rows);
+      for (int i = 0; i < rows;) {
+        int length = in.readInt();
+        if (length <= 0 || length > rows - i)
+          throw new TrevniRuntimeException("Bad run length: " + length);
+        readValues(in, type, values, i, 1);
+        fill(values, i, i + length);
+        i += length;
+      }
+      return values;
+    case DELTA:
+      long last = in.readLong();
+      long minDelta = in.readLong();
+      int deltaWidth = in.read();
+      BitReader deltas = new BitReader(in);
+      if (type == ValueType.LONG || type == ValueType.FIXED64) {
+        long[] longs = new long[rows];
+        for (int i = 0; i < rows; i++) {
+          if (i > 0)
+            last += deltas.read(deltaWidth) + minDelta;
+          longs[i] = last;
+        }
+        return longs;
+      }
+      int[] ints = new int[rows];
+      for (int i = 0; i < rows; i++) {
+        if (i > 0)
+          last += deltas.read(deltaWidth) + minDelta;
+        ints[i] = (int) last;
+      }
+      return ints;
+    default:
+      throw new TrevniRuntimeException("Unknown encoding: " + encoding);
+    }
+  }
+
+  /**
+   * Return an array for values of an encoded type: int[] for int and fixed32,
+   * long[] for long and fixed64, float[], double[] or String[].
+   */
+  static Object newArray(ValueType type, int length) {
+    switch (type) {
+    case INT:
+    case FIXED32:
+      return new int[length];
+    case LONG:
+    case FIXED64:
+      return new long[length];
+    case FLOAT:
+      return new float[length];
+    case DOUBLE:
+      return new double[length];
+    case STRING:
+      return new String[length];
+    default:
+      throw new TrevniRuntimeException("Not an encoded type: " + type);
+    }
+  }
+
+  /** Read plain values into an array from {@link #newArray(ValueType, int)}. */
+  static void readValues(InputBuffer in, ValueType type, Object array, int start, int count) throws IOException {
+    int end = start + count;
+    switch (type) {
+    case INT:
+      int[] ints = (int[]) array;
+      for (int i = start; i < end; i++)
+        ints[i] = in.readInt();
+      break;
+    case FIXED32:
+      ints = (int[]) array;
+      for (int i = start; i < end; i++)
+        ints[i] = in.readFixed32();
+      break;
+    case LONG:
+      long[] longs = (long[]) array;
+      for (int i = start; i < end; i++)
+        longs[i] = in.readLong();
+      break;
+    case FIXED64:
+      longs = (long[]) array;
+      for (int i = start; i < end; i++)
+        longs[i] = in.readFixed64();
+      break;
+    case FLOAT:
+      float[] floats = (float[]) array;
+      for (int i = start; i < end; i++)
+        floats[i] = in.readFloat();
+      break;
+    case DOUBLE:
+      double[] doubles = (double[]) array;
+      for (int i = start; i < end; i++)
+        doubles[i] = in.readDouble();
+      break;
+    case STRING:
+      String[] strings = (String[]) array;
+      for (int i = start; i < end; i++)
+        strings[i] = in.readString();
+      break;
+    default:
+      throw new TrevniRuntimeException("Not an encoded type: " + type);
+    }
+  }
+
+  /** Return the value at an index of an array of decoded values, boxed. */
+  static Comparable get(Object array, int index) {
+    if (array instanceof int[])
+      return ((int[]) array)[index];
+    if (array instanceof long[])
+      return ((long[]) array)[index];
+    if (array instanceof double[])
+      return ((double[]) array)[index];
+    if (array instanceof float[])
+      return ((float[]) array)[index];
+    return ((String[]) array)[index];
+  }
+
+  private static Object gather(ValueType type, Object dictionary, int[] indexes) {
+    int rows = indexes.length;
+    Object values = newArray(type, rows);
+    if (values instanceof int[]) {
+      int[] from = (int[]) dictionary, to = (int[]) values;
+      for (int i = 0; i < rows; i++)
+        to[i] = from[indexes[i]];
+    } else if (values instanceof long[]) {
+      long[] from = (long[]) dictionary, to = (long[]) values;
+      for (int i = 0; i < rows; i++)
+        to[i] = from[indexes[i]];
+    } else if (values instanceof double[]) {
+      double[] from = (double[]) dictionary, to = (double[]) values;
+      for (int i = 0; i < rows; i++)
+        to[i] = from[indexes[i]];
+    } else if (values instanceof float[]) {
+      float[] from = (float[]) dictionary, to = (float[]) values;
+      for (int i = 0; i < rows; i++)
+        to[i] = from[indexes[i]];
+    } else {
+      String[] from = (String[]) dictionary, to = (String[]) values;
+      for (int i = 0; i < rows; i++)
+        to[i] = from[indexes[i]];
+    }
+    return values;
+  }
+
+  /** Copy the value at start of an array to the following indexes until end. */
+  private static void fill(Object values, int start, int end) {
+    if (values instanceof int[])
+      Arrays.fill((int[]) values, start + 1, end, ((int[]) values)[start]);
+    else if (values instanceof long[])
+      Arrays.fill((long[]) values, start + 1, end, ((long[]) values)[start]);
+    else if (values instanceof double[])
+      Arrays.fill((double[]) values, start + 1, end, ((double[]) values)[start]);
+    else if (values instanceof float[])
+      Arrays.fill((float[]) values, start + 1, end, ((float[]) values)[start]);
+    else
+      Arrays.fill((String[]) values, start + 1, end, ((String[]) values)[start]);
+  }
+
+  /** Writes values of up to 64 bits, least significant bits first. */
+  static class BitWriter {
+    private final OutputBuffer out;
+    private int current;
+    private int bits;
+
+    BitWriter(OutputBuffer out) {
+      this.out = out;
+    }
+
+    void write(long value, int width) {
+      while (width > 0) {
+        int n = Math.min(width, 8 - bits);
+        current |= (int) (value & ((1 << n) - 1)) << bits;
+        value >>>= n;
+        width -= n;
+        bits += n;
+        if (bits == 8) {
+          out.write(current);
+          current = 0;
+          bits = 0;
+        }
+      }
+    }
+
+    void flush() {
+      if (bits > 0)
+        out.write(current);
+      current = 0;
+      bits = 0;
+    }
+  }
+
+  /** Reads values written by a {@link BitWriter}. */
+  static class BitReader {
+    private final InputBuffer in;
+    private int current;
+    private int bits;
+
+    BitReader(InputBuffer in) {
+      this.in = in;
+    }
+
+    long read(int width) throws IOException {
+      long result = 0;
+      for (int shift = 0; shift < width;) {
+        if (bits == 0) {
+          current = in.read();
+          bits = 8;
+        }
+        int n = Math.min(width - shift, bits);
+        result |= (long) (current & ((1 << n) - 1)) << shift;
+        current >>>= n;
+        bits -= n;
+        shift += n;
+      }
+      return result;
+    }
+  }
+}
@@ -26,6 +26,8 @@ import java.nio.charset.CharsetDecoder;
 
 /** Used to read values. */
 class InputBuffer {
+  static final int DEFAULT_BUFFER_SIZE = 8192; // big enough for primitives
+
   private Input in;
 
   private long inLength;
@@ -47,6 +49,11 @@ class InputBuffer {
   }
 
   public InputBuffer(Input in, long position) throws IOException {
+    this(in, position, DEFAULT_BUFFER_SIZE);
+  }
+
+  /** Construct reading up to {@code bufferSize} bytes at a time from input. */
+  public InputBuffer(Input in, long position, int bufferSize) throws IOException {
     this.in = in;
     this.inLength = in.length();
     this.offset = position;
@@ -57,10 +64,22 @@ class InputBuffer {
       this.offset = limit;
       this.pos = (int) position;
     } else { // create new buffer
-      this.buf = new byte[8192]; // big enough for primitives
+      this.buf = new byte[Math.max(bufferSize, DEFAULT_BUFFER_SIZE)];
     }
   }
 
+  /** Reuse this to read bytes from their start. */
+  void reset(InputBytes in) throws IOException {
+    this.in = in;
+    this.inLength = in.length();
+    this.buf = in.getBuffer();
+    this.limit = (int) inLength;
+    this.offset = limit;
+    this.pos = 0;
+    this.bitCount = 0;
+    this.runLength = 0;
+  }
+
   public void seek(long position) throws IOException {
     runLength = 0;
     if (position >= (offset - limit) && position <= offset) {
@@ -376,6 +395,8 @@ class InputBuffer {
 
       limit = readInput(buf, 0, buf.length); // refill buffer
       pos = 0;
+      while (limit < len) // short read
+        limit += readInput(buf, limit, buf.length - limit);
     }
 
     System.arraycopy(buf, pos, bytes, start, len); // copy from buffer
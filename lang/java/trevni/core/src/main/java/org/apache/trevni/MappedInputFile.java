@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.trevni;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An {@link Input} for files that maps them into memory, so that reads copy
+ * from the page cache without a system call each. Suits local files that are
+ * scanned over many columns or read at random. The mapping is released once
+ * this is garbage collected.
+ */
+public class MappedInputFile implements Input {
+  private static final int PART_BITS = 30; // map in parts of 1GB
+  private static final long PART_SIZE = 1L << PART_BITS;
+
+  private final long length;
+  private ByteBuffer[] parts;
+
+  /** Construct for the given file. */
+  public MappedInputFile(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      this.length = channel.size();
+      this.parts = new ByteBuffer[(int) ((length + PART_SIZE - 1) >>> PART_BITS)];
+      for (int i = 0; i < parts.length; i++) {
+        long start = (long) i << PART_BITS;
+        parts[i] = channel.map(MapMode.READ_ONLY, start, Math.min(PART_SIZE, length - start));
+      }
+    }
+  }
+
+  @Override
+  public long length() throws IOException {
+    return length;
+  }
+
+  @Override
+  public int read(long position, byte[] b, int start, int len) throws IOException {
+    ByteBuffer[] parts = this.parts;
+    if (parts == null)
+      throw new IOException("Closed");
+    if (position >= length)
+      return -1;
+    int total = (int) Math.min(len, length - position);
+    for (int read = 0; read < total;) {
+      ByteBuffer part = parts[(int) (position >>> PART_BITS)].duplicate(); // for thread safety
+      ((Buffer) part).position((int) (position & (PART_SIZE - 1)));
+      int n = Math.min(total - read, part.remaining());
+      part.get(b, start + read, n);
+      read += n;
+      position += n;
+    }
+    return total;
+  }
+
+  @Override
+  public void close() throws IOException {
+    parts = null;
+  }
+
+}
@@ -28,7 +28,10 @@ public class MetaData<T extends MetaData> extends LinkedHashMap<String, byte[]>
   static final String RESERVED_KEY_PREFIX = "trevni.";
 
   static final String CODEC_KEY = RESERVED_KEY_PREFIX + "codec";
+  static final String CODEC_LEVEL_KEY = RESERVED_KEY_PREFIX + "codec.level";
   static final String CHECKSUM_KEY = RESERVED_KEY_PREFIX + "checksum";
+  static final String ENCODING_KEY = RESERVED_KEY_PREFIX + "encoding";
+  static final String STATISTICS_KEY = RESERVED_KEY_PREFIX + "statistics";
 
   private MetaData<?> defaults;
 
@@ -47,6 +50,21 @@ public class MetaData<T extends MetaData> extends LinkedHashMap<String, byte[]>
     return (T) this;
   }
 
+  /** Return the compression level, or null for the codec's default. */
+  public Integer getCodecLevel() {
+    String level = getString(CODEC_LEVEL_KEY);
+    return level == null ? null : Integer.valueOf(level);
+  }
+
+  /**
+   * Set the compression level of the "deflate", "zstandard" and "xz" codecs.
+   * Higher levels compress smaller but slower.
+   */
+  public T setCodecLevel(int level) {
+    setReserved(CODEC_LEVEL_KEY, Integer.toString(level));
+    return (T) this;
+  }
+
   /** Return the checksum algorithm name. */
   public String getChecksum() {
     return getString(CHECKSUM_KEY);
@@ -58,6 +76,34 @@ public class MetaData<T extends MetaData> extends LinkedHashMap<String, byte[]>
     return (T) this;
   }
 
+  /** Return the value encoding name. */
+  public String getEncoding() {
+    return getString(ENCODING_KEY);
+  }
+
+  /**
+   * Set the value encoding name, either "plain", the default, or "auto" to encode
+   * each block of a column with a dictionary, runs or deltas when smaller.
+   */
+  public T setEncoding(String encoding) {
+    setReserved(ENCODING_KEY, encoding);
+    return (T) this;
+  }
+
+  /** Return true if blocks record the range and count of their values. */
+  public boolean hasStatistics() {
+    return getBoolean(STATISTICS_KEY) || (defaults != null && defaults.getBoolean(STATISTICS_KEY));
+  }
+
+  /**
+   * Set whether each block records the least and greatest of its values, the
+   * number of values, and the number of rows without values, so that readers can
+   * skip blocks that can't match a {@link ColumnPredicate}.
+   */
+  public T hasStatistics(boolean statistics) {
+    return setReservedBoolean(STATISTICS_KEY, statistics);
+  }
+
   /** Return the value of a metadata property as a String. */
   public String getString(String key) {
     byte[] value = get(key);
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.trevni;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.tukaani.xz.ArrayCache;
+import org.tukaani.xz.BasicArrayCache;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZInputStream;
+import org.tukaani.xz.XZOutputStream;
+
+/**
+ * Implements xz compression and decompression, reusing dictionaries and other
+ * arrays between blocks.
+ */
+class XZCodec extends Codec {
+  static final int DEFAULT_LEVEL = LZMA2Options.PRESET_DEFAULT;
+
+  private final int level;
+  private LZMA2Options options;
+  private ArrayCache arrays;
+  private ByteArrayOutputStream outputBuffer;
+  private byte[] copyBuffer;
+
+  XZCodec(int level) {
+    this.level = level;
+  }
+
+  @Override
+  ByteBuffer compress(ByteBuffer data) throws IOException {
+    if (options == null)
+      options = new LZMA2Options(Math.max(Math.min(level, LZMA2Options.PRESET_MAX), LZMA2Options.PRESET_MIN));
+    ByteArrayOutputStream baos = getOutputBuffer(data.remaining());
+    try (OutputStream outputStream = new XZOutputStream(baos, options, getArrays())) {
+      outputStream.write(data.array(), computeOffset(data), data.remaining());
+    }
+    return ByteBuffer.wrap(baos.toByteArray());
+  }
+
+  @Override
+  ByteBuffer decompress(ByteBuffer data) throws IOException {
+    ByteArrayOutputStream baos = getOutputBuffer(data.remaining() * 4);
+    if (copyBuffer == null)
+      copyBuffer = new byte[8192];
+    try (InputStream inputStream = new XZInputStream(
+        new ByteArrayInputStream(data.array(), computeOffset(data), data.remaining()), getArrays())) {
+      for (int n = inputStream.read(copyBuffer); n > 0; n = inputStream.read(copyBuffer))
+        baos.write(copyBuffer, 0, n);
+    }
+    return ByteBuffer.wrap(baos.toByteArray());
+  }
+
+  private ArrayCache getArrays() {
+    if (arrays == null)
+      arrays = new BasicArrayCache();
+    return arrays;
+  }
+
+  private ByteArrayOutputStream getOutputBuffer(int suggestedLength) {
+    if (null == outputBuffer)
+      outputBuffer = new ByteArrayOutputStream(suggestedLength);
+    outputBuffer.reset();
+    return outputBuffer;
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.trevni;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+
+/**
+ * Implements Zstandard compression and decompression, reusing native contexts
+ * between blocks.
+ */
+class ZstandardCodec extends Codec {
+  static final int DEFAULT_LEVEL = 3;
+
+  private final int level;
+  private ZstdCompressCtx compressor;
+  private ZstdDecompressCtx decompressor;
+
+  ZstandardCodec(int level) {
+    this.level = level;
+  }
+
+  @Override
+  ByteBuffer compress(ByteBuffer data) throws IOException {
+    if (compressor == null)
+      compressor = new ZstdCompressCtx()
+          .setLevel(Math.max(Math.min(level, Zstd.maxCompressionLevel()), Zstd.minCompressionLevel()));
+    byte[] out = new byte[(int) Zstd.compressBound(data.remaining())];
+    int size = compressor.compressByteArray(out, 0, out.length, data.array(), computeOffset(data), data.remaining());
+    return ByteBuffer.wrap(out, 0, size);
+  }
+
+  @Override
+  ByteBuffer decompress(ByteBuffer data) throws IOException {
+    if (decompressor == null)
+      decompressor = new ZstdDecompressCtx();
+    long length = Zstd.decompressedSize(data.array(), computeOffset(data), data.remaining());
+    if (length < 0 || length > Integer.MAX_VALUE)
+      throw new IOException("Bad Zstandard frame size: " + length);
+    byte[] out = new byte[(int) length];
+    int size = decompressor.decompressByteArray(out, 0, out.length, data.array(), computeOffset(data),
+        data.remaining());
+    return ByteBuffer.wrap(out, 0, size);
+  }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.trevni;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestBlockCache {
+  private static final int COUNT = 200000;
+  private static final long SEED = 42;
+
+  @Rule
+  public TemporaryFolder dir = new TemporaryFolder();
+
+  private File writeDoubles(String encoding) throws Exception {
+    ColumnFileMetaData meta = new ColumnFileMetaData().setCodec("null").setEncoding(encoding);
+    ColumnFileWriter out = new ColumnFileWriter(meta, new ColumnMetaData("x", ValueType.DOUBLE));
+    Random random = new Random(SEED);
+    for (int i = 0; i < COUNT; i++)
+      out.writeRow(random.nextDouble());
+    File file = dir.newFile();
+    out.writeTo(file);
+    return file;
+  }
+
+  private File writeDoubleGroups() throws Exception {
+    File file = dir.newFile();
+    try (OutputStream stream = new FileOutputStream(file)) {
+      ColumnFileWriter out = new ColumnFileWriter(new ColumnFileMetaData(), stream, 256 * 1024,
+          new ColumnMetaData("x", ValueType.DOUBLE));
+      Random random = new Random(SEED);
+      for (int i = 0; i < COUNT; i++)
+        out.writeRow(random.nextDouble());
+      out.close();
+    }
+    return file;
+  }
+
+  private static double[] expected() {
+    double[] values = new double[COUNT];
+    Random random = new Random(SEED);
+    for (int i = 0; i < COUNT; i++)
+      values[i] = random.nextDouble();
+    return values;
+  }
+
+  /** Random doubles don't encode, so their blocks fall back to plain. */
+  @Test
+  public void seekPlainBlocksWithAutoEncoding() throws Exception {
+    double[] expected = expected();
+    try (ColumnFileReader in = new ColumnFileReader(writeDoubles("auto"))) {
+      in.setBlockCache(new BlockCache(1 << 20));
+      ColumnValues<Double> values = in.getValues("x");
+      Random random = new Random(0);
+      for (int i = 0; i < 2000; i++) {
+        int row = random.nextInt(COUNT);
+        values.seek(row);
+        assertEquals("row " + row, expected[row], values.next(), 0);
+      }
+    }
+  }
+
+  /** Readers of different row groups number the same blocks differently. */
+  @Test
+  public void shareAcrossRowGroups() throws Exception {
+    double[] expected = expected();
+    BlockCache cache = new BlockCache(16 << 20);
+    try (Input file = new InputFile(writeDoubleGroups())) {
+      ColumnFileReader first = new ColumnFileReader(file);
+      assertTrue(first.getRowGroupCount() > 2);
+      first.setBlockCache(cache);
+      first.setRowGroups(0, 1);
+      ColumnValues<Double> values = first.getValues("x");
+      for (int row = 0; values.hasNext(); row++)
+        assertEquals("row " + row, expected[row], values.next(), 0);
+
+      ColumnFileReader second = new ColumnFileReader(file);
+      second.setBlockCache(cache);
+      second.setRowGroups(1, second.getRowGroupCount());
+      long firstRow = second.getFirstRow();
+      values = second.getValues("x");
+      for (int row = 0; values.hasNext(); row++)
+        assertEquals("row " + (firstRow + row), expected[(int) firstRow + row], values.next(), 0);
+    }
+  }
+}